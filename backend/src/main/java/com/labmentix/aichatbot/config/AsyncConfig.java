@@ -0,0 +1,24 @@
+package com.labmentix.aichatbot.config;
+
+import com.labmentix.aichatbot.service.Correlation;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor for {@code @Async} methods. The broker's executors keep Boot from
+ * creating its default one, so this stays the thread-per-task executor Spring
+ * falls back to, with the caller's correlation id carried into each task.
+ */
+@Configuration
+public class AsyncConfig implements AsyncConfigurer {
+
+    @Override
+    public Executor getAsyncExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("async-");
+        executor.setTaskDecorator(Correlation::runnable);
+        return executor;
+    }
+}
@@ -0,0 +1,141 @@
+package com.labmentix.aichatbot.config;
+
+import com.labmentix.aichatbot.service.BoundedCache;
+import io.micrometer.core.instrument.Metrics;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate second-level cache regions backed by {@link BoundedCache}, so
+ * entities marked cacheable (e.g. {@code User}) are bounded and expire like the
+ * application's own caches. Configured through
+ * {@code hibernate.cache.region.factory_class}; region size and time-to-live come
+ * from {@code hibernate.cache.bounded.max_entries} and {@code .ttl_seconds}.
+ *
+ * Hibernate creates this class itself, so its meters go to the global registry.
+ * The cache is local to the node: entities that other nodes change show up once
+ * their entry expires.
+ */
+public class BoundedCacheRegionFactory extends RegionFactoryTemplate {
+
+    public static final String MAX_ENTRIES = "hibernate.cache.bounded.max_entries";
+    public static final String TTL_SECONDS = "hibernate.cache.bounded.ttl_seconds";
+
+    private int maxEntries = 10_000;
+    private Duration ttl = Duration.ofMinutes(10);
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        Object max = configValues.get(MAX_ENTRIES);
+        if (max != null) {
+            maxEntries = Integer.parseInt(max.toString());
+        }
+        Object seconds = configValues.get(TTL_SECONDS);
+        if (seconds != null) {
+            ttl = Duration.ofSeconds(Long.parseLong(seconds.toString()));
+        }
+    }
+
+    @Override
+    protected void releaseFromUse() {
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext) {
+        return new Storage(regionConfig.getRegionName());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+            SessionFactoryImplementor sessionFactory) {
+        return new Storage(regionName);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+            SessionFactoryImplementor sessionFactory) {
+        // Update timestamps must never be evicted or stale query results would be served
+        Map<Object, Object> timestamps = new ConcurrentHashMap<>();
+        return new StorageAccess() {
+            @Override
+            public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+                return timestamps.get(key);
+            }
+
+            @Override
+            public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+                timestamps.put(key, value);
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return timestamps.containsKey(key);
+            }
+
+            @Override
+            public void evictData() {
+                timestamps.clear();
+            }
+
+            @Override
+            public void evictData(Object key) {
+                timestamps.remove(key);
+            }
+
+            @Override
+            public void release() {
+                timestamps.clear();
+            }
+        };
+    }
+
+    private final class Storage implements DomainDataStorageAccess {
+        private final BoundedCache<Object, Object> cache;
+
+        Storage(String regionName) {
+            cache = new BoundedCache<>("hibernate." + regionName, maxEntries, ttl);
+            cache.bindTo(Metrics.globalRegistry);
+        }
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return cache.getIfPresent(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            cache.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return cache.contains(key);
+        }
+
+        @Override
+        public void evictData() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void release() {
+            cache.invalidateAll();
+        }
+    }
+}
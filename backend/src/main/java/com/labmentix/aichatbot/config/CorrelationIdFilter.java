@@ -0,0 +1,40 @@
+package com.labmentix.aichatbot.config;
+
+import com.labmentix.aichatbot.service.Correlation;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Gives every HTTP request a correlation id (the caller's {@code X-Correlation-Id}
+ * if it is usable) for the duration of the request, and echoes it back so client
+ * reports can be matched with server logs.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String id = request.getHeader(Correlation.HEADER);
+        if (!Correlation.isValid(id)) {
+            id = Correlation.newId();
+        }
+        MDC.put(Correlation.MDC_KEY, id);
+        response.setHeader(Correlation.HEADER, id);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(Correlation.MDC_KEY);
+        }
+    }
+}
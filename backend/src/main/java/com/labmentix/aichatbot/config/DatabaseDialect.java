@@ -0,0 +1,59 @@
+package com.labmentix.aichatbot.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * The database flavour behind the data source, for the few statements that
+ * differ between Postgres and the embedded H2 (upserts, mostly).
+ */
+@Component
+public class DatabaseDialect {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    public boolean isPostgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgres = product != null && product.toLowerCase().contains("postgresql");
+        }
+        return postgres;
+    }
+
+    /**
+     * An insert of {@code columns} that adds {@code increment} to the existing row with the
+     * same {@code keys} instead of failing. Parameters are the column values in order;
+     * {@code types} are the SQL types of the columns, which H2 needs to bind them.
+     */
+    public String incrementingUpsert(String table, String[] keys, String[] columns, String[] types, String increment) {
+        String columnList = String.join(", ", columns);
+        String placeholders = String.join(", ", java.util.Collections.nCopies(columns.length, "?"));
+        if (isPostgres()) {
+            return "INSERT INTO " + table + " (" + columnList + ") VALUES (" + placeholders + ") "
+                    + "ON CONFLICT (" + String.join(", ", keys) + ") DO UPDATE SET "
+                    + increment + " = " + table + "." + increment + " + EXCLUDED." + increment;
+        }
+        StringBuilder on = new StringBuilder();
+        for (String key : keys) {
+            on.append(on.length() == 0 ? "" : " AND ").append("t.").append(key).append(" = s.").append(key);
+        }
+        return "MERGE INTO " + table + " t USING (SELECT " + placeholderColumns(columns, types) + ") s ON " + on
+                + " WHEN MATCHED THEN UPDATE SET " + increment + " = t." + increment + " + s." + increment
+                + " WHEN NOT MATCHED THEN INSERT (" + columnList + ") VALUES (s."
+                + String.join(", s.", columns) + ")";
+    }
+
+    private static String placeholderColumns(String[] columns, String[] types) {
+        StringBuilder select = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            select.append(i == 0 ? "" : ", ").append("CAST(? AS ").append(types[i]).append(") AS ").append(columns[i]);
+        }
+        return select.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.labmentix.aichatbot.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-category sampling and rate limiting of DEBUG/INFO events, configured in
+ * {@code logback-spring.xml} with one {@code <rule>category:sample:perSecond</rule>}
+ * per logger prefix (the longest matching prefix wins). {@code sample} keeps that
+ * fraction of events and {@code perSecond} caps what is left (0 = no cap).
+ *
+ * WARN and ERROR always pass. Runs before the event is built and without
+ * locks, so dropped events cost almost nothing.
+ */
+public class LogSamplingFilter extends TurboFilter {
+
+    private static final class Rule {
+        final String prefix;
+        final double sample;
+        final int perSecond;
+        final AtomicLong second = new AtomicLong();
+        final AtomicInteger passed = new AtomicInteger();
+
+        Rule(String prefix, double sample, int perSecond) {
+            this.prefix = prefix;
+            this.sample = sample;
+            this.perSecond = perSecond;
+        }
+
+        boolean admit() {
+            if (sample < 1.0 && ThreadLocalRandom.current().nextDouble() >= sample) {
+                return false;
+            }
+            if (perSecond <= 0) {
+                return true;
+            }
+            long now = System.currentTimeMillis() / 1000;
+            long current = second.get();
+            if (current != now && second.compareAndSet(current, now)) {
+                passed.set(0);
+            }
+            return passed.incrementAndGet() <= perSecond;
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, Optional<Rule>> byLogger = new ConcurrentHashMap<>();
+
+    /** Called by Logback for each {@code <rule>} element. */
+    public void addRule(String spec) {
+        String[] parts = spec.trim().split(":");
+        if (parts.length != 3) {
+            addError("Expected category:sample:perSecond but got " + spec);
+            return;
+        }
+        try {
+            rules.add(new Rule(parts[0], Double.parseDouble(parts[1]), Integer.parseInt(parts[2])));
+            rules.sort(Comparator.comparingInt((Rule r) -> r.prefix.length()).reversed());
+        } catch (NumberFormatException e) {
+            addError("Invalid log sampling rule " + spec);
+        }
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // A null format is an isXxxEnabled() check, which must not use up the budget
+        if (!isStarted() || level == null || format == null || level.isGreaterOrEqual(Level.WARN)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Optional<Rule> rule = byLogger.computeIfAbsent(logger.getName(), name -> rules.stream()
+                .filter(r -> name.startsWith(r.prefix))
+                .findFirst());
+        return rule.isEmpty() || rule.get().admit() ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
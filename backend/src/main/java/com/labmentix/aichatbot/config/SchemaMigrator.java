@@ -0,0 +1,277 @@
+package com.labmentix.aichatbot.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Brings the schema up to date on startup. Each migration has a version and
+ * runs once; {@code schema_migrations} records it with a checksum of its
+ * statements, so a migration edited after it was applied stops startup instead
+ * of leaving nodes with different schemas. When every version is recorded the
+ * only work is reading that table.
+ *
+ * Migrations never change once released: add a new version instead. Statements
+ * stay idempotent, so databases created before this runner existed adopt the
+ * baseline without changes. On Postgres an advisory lock keeps nodes that
+ * start together from migrating twice.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class SchemaMigrator implements CommandLineRunner {
+
+    private static final long ADVISORY_LOCK_KEY = 0x6c6d78L; // any constant shared by all nodes
+
+    record Migration(int version, String description, List<String> statements) {
+        String checksum() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (String statement : statements) {
+                    digest.update(statement.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '\n');
+                }
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+
+    @Value("${schema.migrations.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabaseDialect dialect;
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            log.info("Schema migrations are disabled");
+            return;
+        }
+        boolean postgres = dialect.isPostgres();
+        List<Migration> migrations = migrations(postgres);
+        // Fast path: nothing to lock or run when every version is already recorded
+        if (pending(appliedChecksums(jdbcTemplate), migrations).isEmpty()) {
+            log.info("Schema is current at version {}", migrations.get(migrations.size() - 1).version());
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            migrate(connection, postgres, migrations);
+            return null;
+        });
+    }
+
+    void migrate(Connection connection, boolean postgres, List<Migration> migrations) throws SQLException {
+        // Session settings and the advisory lock only hold on one connection
+        JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        boolean autoCommit = connection.getAutoCommit();
+        if (postgres) {
+            session.execute("SET statement_timeout = 0");
+            session.queryForObject("SELECT pg_advisory_lock(?)", Object.class, ADVISORY_LOCK_KEY);
+        }
+        try {
+            session.execute("CREATE TABLE IF NOT EXISTS schema_migrations (version INT PRIMARY KEY, "
+                    + "description VARCHAR(255) NOT NULL, checksum VARCHAR(64) NOT NULL, "
+                    + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, execution_ms BIGINT NOT NULL)");
+            // Another node may have finished while this one waited for the lock
+            for (Migration migration : pending(appliedChecksums(session), migrations)) {
+                long started = System.currentTimeMillis();
+                connection.setAutoCommit(false);
+                try {
+                    migration.statements().forEach(session::execute);
+                    session.update("INSERT INTO schema_migrations (version, description, checksum, execution_ms) "
+                            + "VALUES (?, ?, ?, ?)", migration.version(), migration.description(),
+                            migration.checksum(), System.currentTimeMillis() - started);
+                    connection.commit();
+                } catch (RuntimeException e) {
+                    connection.rollback();
+                    throw new IllegalStateException("Schema migration " + migration.version() + " ("
+                            + migration.description() + ") failed: " + e.getMessage(), e);
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+                log.info("Applied schema migration {} ({}) in {} ms", migration.version(), migration.description(),
+                        System.currentTimeMillis() - started);
+            }
+        } finally {
+            if (postgres) {
+                session.queryForObject("SELECT pg_advisory_unlock(?)", Object.class, ADVISORY_LOCK_KEY);
+                session.execute("RESET statement_timeout");
+            }
+        }
+    }
+
+    private Map<Integer, String> appliedChecksums(JdbcTemplate jdbc) {
+        Map<Integer, String> applied = new TreeMap<>();
+        try {
+            jdbc.query("SELECT version, checksum FROM schema_migrations", rs -> {
+                applied.put(rs.getInt(1), rs.getString(2));
+            });
+        } catch (org.springframework.jdbc.BadSqlGrammarException e) {
+            // First start with this runner: the table does not exist yet
+        }
+        return applied;
+    }
+
+    private static List<Migration> pending(Map<Integer, String> applied, List<Migration> migrations) {
+        for (Migration migration : migrations) {
+            String checksum = applied.get(migration.version());
+            if (checksum != null && !checksum.equals(migration.checksum())) {
+                throw new IllegalStateException("Schema migration " + migration.version() + " ("
+                        + migration.description() + ") was changed after it was applied");
+            }
+        }
+        return migrations.stream().filter(m -> !applied.containsKey(m.version())).toList();
+    }
+
+    static List<Migration> migrations(boolean postgres) {
+        String id = postgres ? "BIGSERIAL PRIMARY KEY" : "BIGINT AUTO_INCREMENT PRIMARY KEY";
+        return List.of(
+                new Migration(1, "baseline", statements(
+                        postgres ? "CREATE EXTENSION IF NOT EXISTS vector" : null,
+                        "CREATE TABLE IF NOT EXISTS users (id " + id + ", username VARCHAR(255) UNIQUE NOT NULL, "
+                                + "password VARCHAR(255) NOT NULL, role VARCHAR(50) DEFAULT 'ROLE_USER')",
+                        "CREATE TABLE IF NOT EXISTS conversations (id " + id + ", "
+                                + "user_id BIGINT REFERENCES users(id) ON DELETE CASCADE, title VARCHAR(255), "
+                                + "started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+                        // Tombstone of conversations whose rows are still being reclaimed
+                        "ALTER TABLE conversations ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP",
+                        "CREATE TABLE IF NOT EXISTS messages (id " + id + ", "
+                                + "conversation_id BIGINT REFERENCES conversations(id) ON DELETE CASCADE, "
+                                + "content TEXT NOT NULL, timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                                + "type VARCHAR(50) NOT NULL, status VARCHAR(50) DEFAULT 'SENT', attachment_url TEXT, "
+                                + "attachment_type VARCHAR(100), sender_id BIGINT REFERENCES users(id) ON DELETE SET NULL)",
+                        // Per-conversation sequence numbers for resumable sessions
+                        "ALTER TABLE messages ADD COLUMN IF NOT EXISTS seq BIGINT",
+                        "UPDATE messages m SET seq = (SELECT COUNT(*) FROM messages m2 "
+                                + "WHERE m2.conversation_id = m.conversation_id AND m2.id <= m.id) WHERE seq IS NULL",
+                        "CREATE INDEX IF NOT EXISTS idx_messages_conversation_seq ON messages (conversation_id, seq)",
+                        // Keyset pagination of message history
+                        "CREATE INDEX IF NOT EXISTS idx_messages_conversation_id_id ON messages (conversation_id, id)",
+                        // Message ids come from a sequence in blocks of 50 so writes can be batched
+                        "CREATE SEQUENCE IF NOT EXISTS message_ids START WITH 1 INCREMENT BY 50",
+                        postgres
+                                ? "SELECT setval('message_ids', (SELECT COALESCE(MAX(id), 0) + 1 FROM messages), false) "
+                                        + "WHERE (SELECT last_value FROM message_ids) <= (SELECT COALESCE(MAX(id), 0) FROM messages)"
+                                : "ALTER SEQUENCE message_ids RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, "
+                                        + "(SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+                                        + "WHERE SEQUENCE_NAME = 'MESSAGE_IDS')) FROM messages)",
+                        // Counters maintained by ConversationStatsService, backfilled for older rows
+                        "ALTER TABLE conversations ADD COLUMN IF NOT EXISTS message_count BIGINT NOT NULL DEFAULT 0",
+                        "ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_message_at TIMESTAMP",
+                        "UPDATE conversations c SET "
+                                + "message_count = (SELECT COUNT(*) FROM messages m WHERE m.conversation_id = c.id), "
+                                + "last_message_at = (SELECT MAX(m.timestamp) FROM messages m WHERE m.conversation_id = c.id) "
+                                + "WHERE c.message_count = 0 AND EXISTS (SELECT 1 FROM messages m WHERE m.conversation_id = c.id)",
+                        "CREATE INDEX IF NOT EXISTS idx_conversations_message_count ON conversations (message_count)",
+                        "CREATE INDEX IF NOT EXISTS idx_conversations_user_last_message ON conversations (user_id, last_message_at)",
+                        postgres
+                                ? "CREATE TABLE IF NOT EXISTS knowledge_base (id BIGSERIAL PRIMARY KEY, content TEXT NOT NULL, "
+                                        + "embedding vector(384), file_name VARCHAR(255) NOT NULL)"
+                                : "CREATE TABLE IF NOT EXISTS knowledge_base (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                                        + "content TEXT NOT NULL, file_name VARCHAR(255) NOT NULL)",
+                        // Daily analytics rollups, maintained by MessageRollupService
+                        "CREATE TABLE IF NOT EXISTS message_daily_rollup (bucket_date DATE NOT NULL, "
+                                + "message_type VARCHAR(50) NOT NULL, message_count BIGINT NOT NULL, "
+                                + "PRIMARY KEY (bucket_date, message_type))",
+                        "CREATE TABLE IF NOT EXISTS user_daily_rollup (bucket_date DATE NOT NULL, "
+                                + "user_id BIGINT NOT NULL, message_count BIGINT NOT NULL, PRIMARY KEY (bucket_date, user_id))",
+                        "CREATE TABLE IF NOT EXISTS analytics_sketches (bucket_date DATE NOT NULL, "
+                                + "metric VARCHAR(50) NOT NULL, sketch " + (postgres ? "BYTEA" : "VARBINARY") + " NOT NULL, "
+                                + "PRIMARY KEY (bucket_date, metric))")),
+                new Migration(2, "hot-path indexes", statements(
+                        // KnowledgeDocument maps both columns; the baseline tables never had them
+                        "ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS source_url TEXT",
+                        postgres ? null : "ALTER TABLE knowledge_base ADD COLUMN IF NOT EXISTS embedding DOUBLE PRECISION ARRAY",
+                        // Attachment lookups are equality only; a hash index also has no key length limit
+                        postgres
+                                ? "CREATE INDEX IF NOT EXISTS idx_knowledge_base_source_url ON knowledge_base USING hash (source_url)"
+                                : "CREATE INDEX IF NOT EXISTS idx_knowledge_base_source_url ON knowledge_base (source_url)",
+                        // Sidebar fallback and default conversation lookup
+                        "CREATE INDEX IF NOT EXISTS idx_conversations_user_started ON conversations (user_id, started_at)",
+                        // Rollup reconciliation scans messages by time range
+                        "CREATE INDEX IF NOT EXISTS idx_messages_timestamp ON messages (timestamp)")),
+                new Migration(3, "knowledge base vector index", statements(postgres
+                        // HNSW needs pgvector 0.5; older installs get IVFFlat
+                        ? "DO $$ BEGIN "
+                                + "CREATE INDEX IF NOT EXISTS idx_knowledge_base_embedding ON knowledge_base "
+                                + "USING hnsw (embedding vector_cosine_ops); "
+                                + "EXCEPTION WHEN undefined_object THEN "
+                                + "CREATE INDEX IF NOT EXISTS idx_knowledge_base_embedding ON knowledge_base "
+                                + "USING ivfflat (embedding vector_cosine_ops) WITH (lists = 100); "
+                                + "END $$"
+                        // H2 has no vector search; similarity queries only run on Postgres
+                        : null)),
+                new Migration(4, "monthly message partitions", statements(
+                        // Partitions by time range, see MessagePartitionService
+                        "CREATE TABLE IF NOT EXISTS message_partitions (partition_name VARCHAR(63) PRIMARY KEY, "
+                                + "range_start TIMESTAMP, range_end TIMESTAMP NOT NULL, archived_at TIMESTAMP, "
+                                + "archived_rows BIGINT)",
+                        // Where each conversation's messages are in the archive files, see MessageArchive
+                        "CREATE TABLE IF NOT EXISTS message_archive_conversations (conversation_id BIGINT NOT NULL, "
+                                + "partition_name VARCHAR(63) NOT NULL, file_name VARCHAR(255) NOT NULL, "
+                                + "block_offset BIGINT NOT NULL, block_length INT NOT NULL, message_count INT NOT NULL, "
+                                + "max_seq BIGINT, PRIMARY KEY (conversation_id, partition_name))",
+                        // The existing table becomes the partition of everything up to next month, so no row
+                        // is copied. The key has to include the partition column, on the partition as well as
+                        // on the parent; ids stay unique through the message_ids sequence.
+                        postgres ? "DO $$ DECLARE bound TIMESTAMP := date_trunc('month', now()) + interval '1 month'; "
+                                + "legacy_key NAME; "
+                                + "BEGIN "
+                                + "IF (SELECT relkind FROM pg_class WHERE oid = 'messages'::regclass) = 'p' THEN RETURN; END IF; "
+                                + "UPDATE messages m SET timestamp = COALESCE((SELECT c.started_at FROM conversations c "
+                                + "WHERE c.id = m.conversation_id), now()) WHERE m.timestamp IS NULL; "
+                                + "ALTER TABLE messages RENAME TO messages_legacy; "
+                                + "ALTER TABLE messages_legacy ALTER COLUMN timestamp SET NOT NULL; "
+                                + "ALTER TABLE messages_legacy ALTER COLUMN id DROP DEFAULT; "
+                                + "SELECT conname INTO legacy_key FROM pg_constraint "
+                                + "WHERE conrelid = 'messages_legacy'::regclass AND contype = 'p'; "
+                                + "IF legacy_key IS NOT NULL THEN "
+                                + "EXECUTE format('ALTER TABLE messages_legacy DROP CONSTRAINT %I', legacy_key); "
+                                + "END IF; "
+                                + "ALTER TABLE messages_legacy ADD CONSTRAINT messages_legacy_pkey PRIMARY KEY (id, timestamp); "
+                                + "ALTER INDEX idx_messages_conversation_seq RENAME TO messages_legacy_conversation_seq; "
+                                + "ALTER INDEX idx_messages_conversation_id_id RENAME TO messages_legacy_conversation_id_id; "
+                                + "ALTER INDEX idx_messages_timestamp RENAME TO messages_legacy_timestamp; "
+                                + "CREATE TABLE messages (LIKE messages_legacy INCLUDING DEFAULTS) PARTITION BY RANGE (timestamp); "
+                                + "ALTER TABLE messages ADD PRIMARY KEY (id, timestamp); "
+                                + "ALTER TABLE messages ADD FOREIGN KEY (conversation_id) REFERENCES conversations(id) ON DELETE CASCADE; "
+                                + "ALTER TABLE messages ADD FOREIGN KEY (sender_id) REFERENCES users(id) ON DELETE SET NULL; "
+                                + "CREATE INDEX idx_messages_conversation_seq ON messages (conversation_id, seq); "
+                                + "CREATE INDEX idx_messages_conversation_id_id ON messages (conversation_id, id); "
+                                + "CREATE INDEX idx_messages_timestamp ON messages (timestamp); "
+                                + "EXECUTE format('ALTER TABLE messages ATTACH PARTITION messages_legacy "
+                                + "FOR VALUES FROM (MINVALUE) TO (%L)', bound); "
+                                + "CREATE TABLE messages_default PARTITION OF messages DEFAULT; "
+                                + "INSERT INTO message_partitions (partition_name, range_start, range_end) "
+                                + "VALUES ('messages_legacy', NULL, bound); "
+                                + "END $$" : null)));
+    }
+
+    // Statements of one dialect; null marks a statement the other dialect needs
+    private static List<String> statements(String... sql) {
+        return java.util.Arrays.stream(sql).filter(java.util.Objects::nonNull).toList();
+    }
+}
@@ -1,15 +1,54 @@
 package com.labmentix.aichatbot.config;
 
+import com.labmentix.aichatbot.security.StompAuthChannelInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
+
+    @Autowired
+    private WebSocketOutboundFlowControl outboundFlowControl;
+
+    @Value("${chat.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${chat.ws.send-buffer-bytes:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.ws.message-size-bytes:65536}")
+    private int messageSizeLimit;
+
+    @Value("${chat.ws.outbound.threads:8}")
+    private int outboundThreads;
+
+    // none | loopback | postgres relay through ChatBroadcaster; stomp-relay uses an external broker
+    @Value("${chat.cluster.mode:none}")
+    private String clusterMode;
+
+    @Value("${chat.cluster.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.cluster.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.cluster.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${chat.cluster.relay.passcode:guest}")
+    private String relayPasscode;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
@@ -19,7 +58,46 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic");
+        // /topic/conversation.{id} for per-conversation traffic, /user/queue/** for per-user notices
+        if ("stomp-relay".equalsIgnoreCase(clusterMode)) {
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // Lets /user/queue/** reach sessions that live on other nodes
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            registry.enableSimpleBroker("/topic", "/queue");
+        }
+        // The outbound channel has several threads; without this a session's frames can overtake each other
+        registry.setPreservePublishOrder(true);
         registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthChannelInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Sessions that cannot drain their socket buffer in time are closed by Spring
+        registration.setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(outboundFlowControl);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(outboundFlowControl);
+        registration.taskExecutor()
+                .corePoolSize(outboundThreads)
+                .maxPoolSize(outboundThreads);
     }
 }
@@ -0,0 +1,188 @@
+package com.labmentix.aichatbot.config;
+
+import com.labmentix.aichatbot.dto.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-session backpressure for the client outbound channel.
+ *
+ * Every session has a bounded count of frames waiting for the outbound executor.
+ * Typing indicators are coalesced while one for the same conversation is still
+ * pending and dropped once the session is above the high-water mark. Every other
+ * frame is delivered: conversation updates look alike on the wire but differ in
+ * conversation and content, and a client waiting for "Conversation Selected"
+ * cannot subscribe without it. A session that piles up more than
+ * {@code max-queued} frames is closed instead. Spring's own send
+ * buffer and time limits (see {@link WebSocketConfig}) bound what is already
+ * handed to the socket.
+ */
+@Component
+@Slf4j
+public class WebSocketOutboundFlowControl implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    /** Native header carrying the {@link ChatMessage.MessageType} of an outbound frame. */
+    public static final String CHAT_TYPE_HEADER = "chat-type";
+
+    private static final Set<ChatMessage.MessageType> DROPPABLE = EnumSet.of(ChatMessage.MessageType.TYPING);
+
+    @Value("${chat.ws.outbound.high-water:16}")
+    private int highWater;
+
+    @Value("${chat.ws.outbound.max-queued:256}")
+    private int maxQueued;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+
+    private Counter coalescedCounter;
+    private Counter droppedCounter;
+    private Counter evictedCounter;
+
+    @PostConstruct
+    public void init() {
+        coalescedCounter = Counter.builder("chat.ws.outbound.coalesced")
+                .description("Typing frames merged into a pending one for the same conversation")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("chat.ws.outbound.dropped")
+                .description("Typing frames discarded for sessions above the high-water mark")
+                .register(meterRegistry);
+        evictedCounter = Counter.builder("chat.ws.sessions.evicted")
+                .description("Sessions closed for not keeping up with outbound traffic")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.pending", sessions,
+                s -> s.values().stream().mapToInt(q -> q.pending.get()).sum())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SessionQueue queue = queueFor(message);
+        if (queue == null) {
+            return message;
+        }
+
+        String coalesceKey = coalesceKey(message);
+        if (coalesceKey != null) {
+            if (!queue.pendingDroppable.add(coalesceKey)) {
+                coalescedCounter.increment();
+                return null;
+            }
+            if (queue.pending.get() >= highWater) {
+                queue.pendingDroppable.remove(coalesceKey);
+                droppedCounter.increment();
+                return null;
+            }
+        }
+
+        if (queue.pending.incrementAndGet() > maxQueued) {
+            queue.pending.decrementAndGet();
+            evict(queue);
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        SessionQueue queue = queueFor(message);
+        if (queue == null) {
+            return;
+        }
+        queue.pending.decrementAndGet();
+        String coalesceKey = coalesceKey(message);
+        if (coalesceKey != null) {
+            queue.pendingDroppable.remove(coalesceKey);
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), new SessionQueue(session));
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private SessionQueue queueFor(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return null;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId == null ? null : sessions.get(sessionId);
+    }
+
+    private String coalesceKey(Message<?> message) {
+        String chatType = NativeMessageHeaderAccessor.getFirstNativeHeader(CHAT_TYPE_HEADER, message.getHeaders());
+        if (chatType == null) {
+            return null;
+        }
+        try {
+            if (!DROPPABLE.contains(ChatMessage.MessageType.valueOf(chatType))) {
+                return null;
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Typing frames go to the conversation topic, so the destination names the conversation
+        return chatType + "|" + SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+    }
+
+    private void evict(SessionQueue queue) {
+        if (sessions.remove(queue.session.getId()) == null) {
+            return;
+        }
+        evictedCounter.increment();
+        log.warn("Closing slow WebSocket session {} with {} frames pending", queue.session.getId(), queue.pending.get());
+        try {
+            queue.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            log.debug("Error closing slow session {}: {}", queue.session.getId(), e.getMessage());
+        }
+    }
+
+    private static class SessionQueue {
+        private final WebSocketSession session;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Set<String> pendingDroppable = ConcurrentHashMap.newKeySet();
+
+        private SessionQueue(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+}
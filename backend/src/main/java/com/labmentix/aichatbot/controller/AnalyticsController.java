@@ -1,13 +1,26 @@
 package com.labmentix.aichatbot.controller;
 
 import com.labmentix.aichatbot.dto.AnalyticsDTO;
+import com.labmentix.aichatbot.dto.EngagementDTO;
+import com.labmentix.aichatbot.dto.LiveAnalyticsDTO;
+import com.labmentix.aichatbot.model.MessageType;
 import com.labmentix.aichatbot.service.AnalyticsService;
+import com.labmentix.aichatbot.service.LiveAnalyticsService;
+import com.labmentix.aichatbot.service.MessageRollupService;
+import com.labmentix.aichatbot.service.UserCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/analytics")
 public class AnalyticsController {
@@ -15,8 +28,63 @@ public class AnalyticsController {
     @Autowired
     private AnalyticsService analyticsService;
 
+    @Autowired
+    private LiveAnalyticsService liveAnalyticsService;
+
+    @Autowired
+    private UserCache userCache;
+
     @GetMapping("/stats")
     public ResponseEntity<AnalyticsDTO> getStats() {
         return ResponseEntity.ok(analyticsService.getStats());
     }
+
+    /**
+     * Live totals and the last minute for the first paint of the admin dashboard,
+     * which then follows {@value LiveAnalyticsService#TOPIC}.
+     */
+    @GetMapping("/live")
+    public ResponseEntity<LiveAnalyticsDTO> getLive() {
+        return ResponseEntity.ok(liveAnalyticsService.snapshot());
+    }
+
+    /** Approximate active users/conversations and reply time/length percentiles between two dates. */
+    @GetMapping("/engagement")
+    public ResponseEntity<EngagementDTO> getEngagement(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(analyticsService.getEngagement(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Message counts per day, week or month between two dates (inclusive), optionally
+     * for one message type or one sender. Only admins may ask for another user's counts.
+     */
+    @GetMapping("/messages")
+    public ResponseEntity<Map<String, Long>> getMessageCounts(
+            Authentication authentication,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "type", required = false) MessageType type,
+            @RequestParam(value = "userId", required = false) Long userId) {
+        if (userId != null && !isAdmin(authentication) && !userId.equals(userCache.findByUsername(authentication.getName())
+                .map(UserCache.CachedUser::id).orElse(null))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            MessageRollupService.Granularity bucket = MessageRollupService.Granularity.valueOf(granularity.toUpperCase());
+            return ResponseEntity.ok(analyticsService.getMessageCounts(from, to, bucket, type, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static boolean isAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    }
 }
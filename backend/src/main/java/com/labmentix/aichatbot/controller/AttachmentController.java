@@ -1,6 +1,7 @@
 package com.labmentix.aichatbot.controller;
 
 import com.labmentix.aichatbot.service.FileStorageService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -9,6 +10,7 @@ import java.io.IOException;
 import java.util.Map;
 
 @RestController
+@Slf4j
 @RequestMapping("/api/attachments")
 public class AttachmentController {
 
@@ -40,7 +42,7 @@ public class AttachmentController {
                             .build();
                     knowledgeRepository.save(doc);
                 } catch (Exception e) {
-                    System.err.println("Failed to extract text from PDF: " + e.getMessage());
+                    log.warn("Failed to extract text from PDF {}: {}", file.getOriginalFilename(), e.getMessage());
                     // Continue without failing the upload
                 }
             }
@@ -4,9 +4,15 @@ import com.labmentix.aichatbot.dto.AuthRequest;
 import com.labmentix.aichatbot.dto.AuthResponse;
 import com.labmentix.aichatbot.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
@@ -14,13 +20,24 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
+    // Both run async: the servlet thread is released while the password is hashed
+
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@RequestBody AuthRequest request) {
-        return ResponseEntity.ok(authService.register(request));
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@RequestBody AuthRequest request) {
+        return authService.register(request).thenApply(ResponseEntity::ok).exceptionally(AuthController::busy);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request) {
-        return ResponseEntity.ok(authService.login(request));
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@RequestBody AuthRequest request) {
+        return authService.login(request).thenApply(ResponseEntity::ok).exceptionally(AuthController::busy);
+    }
+
+    /** 429 when password hashing is saturated; any other failure is handled as before. */
+    private static ResponseEntity<AuthResponse> busy(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        throw ex instanceof CompletionException completion ? completion : new CompletionException(cause);
     }
 }
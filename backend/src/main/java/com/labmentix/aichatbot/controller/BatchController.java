@@ -0,0 +1,68 @@
+package com.labmentix.aichatbot.controller;
+
+import com.labmentix.aichatbot.dto.BatchJobStatus;
+import com.labmentix.aichatbot.dto.BatchResult;
+import com.labmentix.aichatbot.service.BatchInferenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Batch question answering: upload an NDJSON file of prompts, poll its progress
+ * and read the answers back as NDJSON while the job runs.
+ */
+@RestController
+@RequestMapping("/api/batch")
+@CrossOrigin(origins = "http://localhost:5173")
+public class BatchController {
+
+    @Autowired
+    private BatchInferenceService batchInferenceService;
+
+    @PostMapping
+    public ResponseEntity<?> submit(Authentication authentication, @RequestParam("file") MultipartFile file) {
+        try {
+            return ResponseEntity.accepted()
+                    .body(batchInferenceService.submit(authentication.getName(), file.getInputStream()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "60")
+                    .body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Error reading batch file: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BatchJobStatus> status(Authentication authentication, @PathVariable("id") String id) {
+        return batchInferenceService.find(id, authentication.getName())
+                .map(job -> ResponseEntity.ok(job.status()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<BatchResult>> results(Authentication authentication, @PathVariable("id") String id) {
+        return batchInferenceService.find(id, authentication.getName())
+                .map(job -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(batchInferenceService.results(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<BatchJobStatus> cancel(Authentication authentication, @PathVariable("id") String id) {
+        return batchInferenceService.find(id, authentication.getName())
+                .map(job -> ResponseEntity.ok(batchInferenceService.cancel(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,12 +1,17 @@
 package com.labmentix.aichatbot.controller;
 
 import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.dto.ResumeRequest;
+import com.labmentix.aichatbot.security.StompUserPrincipal;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+import java.util.List;
+
 @Controller
 public class ChatController {
 
@@ -14,18 +19,29 @@ public class ChatController {
     private com.labmentix.aichatbot.service.ChatService chatService;
 
     @MessageMapping("/chat.sendMessage")
-    @SendTo("/topic/public")
-    public ChatMessage sendMessage(@Payload ChatMessage chatMessage) {
-        chatService.processMessage(chatMessage);
-        return chatMessage;
+    public void sendMessage(@Payload ChatMessage chatMessage, Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
+        // Identity comes from the authenticated session, never from the payload
+        StompUserPrincipal user = (StompUserPrincipal) principal;
+        chatMessage.setSender(user.username());
+        // The accepted message is echoed on the conversation topic once it has been persisted
+        chatService.processMessage(chatMessage, user, headerAccessor.getSessionId());
+    }
+
+    @MessageMapping("/chat.cancel")
+    public void cancel(@Payload ChatMessage chatMessage, Principal principal) {
+        chatService.cancelGeneration(chatMessage.getConversationId(), (StompUserPrincipal) principal);
+    }
+
+    @MessageMapping("/chat.resume")
+    @SendToUser(destinations = "/queue/resume", broadcast = false)
+    public List<ChatMessage> resume(@Payload ResumeRequest request, Principal principal) {
+        // Only the requesting session gets the missed frames
+        return chatService.resume(request, (StompUserPrincipal) principal);
     }
 
     @MessageMapping("/chat.addUser")
-    @SendTo("/topic/public")
-    public ChatMessage addUser(@Payload ChatMessage chatMessage,
-            SimpMessageHeaderAccessor headerAccessor) {
-        // Add username in web socket session
-        headerAccessor.getSessionAttributes().put("username", chatMessage.getSender());
-        return chatMessage;
+    public void addUser(@Payload ChatMessage chatMessage) {
+        // The session is already bound to its user on CONNECT; JOIN is kept for older clients
     }
 }
@@ -0,0 +1,68 @@
+package com.labmentix.aichatbot.controller;
+
+import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.dto.StreamChatRequest;
+import com.labmentix.aichatbot.security.StompUserPrincipal;
+import com.labmentix.aichatbot.service.AdmissionService;
+import com.labmentix.aichatbot.service.StreamingChatService;
+import com.labmentix.aichatbot.service.UserCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Programmatic chat for integrations (bots, scripts): POST a prompt, read the
+ * answer as Server-Sent Events. The response is written asynchronously, so no
+ * servlet thread is held while the model generates.
+ */
+@RestController
+@RequestMapping("/api/chat")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ChatStreamController {
+
+    @Autowired
+    private StreamingChatService streamingChatService;
+
+    @Autowired
+    private AdmissionService admissionService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<ChatMessage>>> stream(Authentication authentication,
+            @RequestBody StreamChatRequest request) {
+        if (request.getPrompt() == null || request.getPrompt().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        StompUserPrincipal principal = userCache.findByUsername(authentication.getName())
+                .map(user -> new StompUserPrincipal(user.id(), user.username()))
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        // Same budget and fair-share slots as the WebSocket path; the slot is held until the stream ends
+        Sinks.Empty<Void> slotGranted = Sinks.empty();
+        CompletableFuture<Void> streamFinished = new CompletableFuture<>();
+        AdmissionService.Decision decision = admissionService.admit(principal, () -> {
+            slotGranted.tryEmitEmpty();
+            return streamFinished;
+        });
+        if (!decision.admitted()) {
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, decision.retryAfterMs() / 1000)))
+                    .build();
+        }
+
+        Flux<ServerSentEvent<ChatMessage>> events = slotGranted.asMono()
+                .thenMany(streamingChatService.stream(principal, request))
+                .doFinally(signal -> streamFinished.complete(null));
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(events);
+    }
+}
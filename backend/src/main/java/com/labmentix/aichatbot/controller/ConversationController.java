@@ -1,19 +1,40 @@
 package com.labmentix.aichatbot.controller;
 
+import com.labmentix.aichatbot.dto.ConversationSummary;
+import com.labmentix.aichatbot.dto.MessageHistoryPage;
+import com.labmentix.aichatbot.dto.MessageView;
 import com.labmentix.aichatbot.dto.RenameRequest;
 import com.labmentix.aichatbot.model.Conversation;
 import com.labmentix.aichatbot.model.Message;
 import com.labmentix.aichatbot.model.User;
 import com.labmentix.aichatbot.repository.ConversationRepository;
+import com.labmentix.aichatbot.repository.MessageRepository;
 import com.labmentix.aichatbot.repository.UserRepository;
+import com.labmentix.aichatbot.service.ContentVersions;
+import com.labmentix.aichatbot.service.ConversationOwnerCache;
+import com.labmentix.aichatbot.service.ConversationDeletionService;
+import com.labmentix.aichatbot.service.ConversationStatsService;
+import com.labmentix.aichatbot.service.MessageArchive;
+import com.labmentix.aichatbot.service.MessageWriteBehind;
+import com.labmentix.aichatbot.service.UserCache;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 @RestController
+@Slf4j
 @RequestMapping("/api/conversations")
 @CrossOrigin(origins = "http://localhost:5173")
 public class ConversationController {
@@ -24,29 +45,146 @@ public class ConversationController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ContentVersions contentVersions;
+
+    @Autowired
+    private MessageWriteBehind messageWriteBehind;
+
+    @Autowired
+    private ConversationDeletionService conversationDeletionService;
+
+    @Autowired
+    private ConversationStatsService conversationStats;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private ConversationOwnerCache conversationOwners;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Value("${chat.deletion.background:true}")
+    private boolean backgroundDelete;
+
+    private static final int MAX_HISTORY_PAGE = 200;
+    private static final int MAX_CONVERSATION_PAGE = 500;
+
     @GetMapping
-    public ResponseEntity<List<Conversation>> getConversations(Authentication authentication) {
-        User user = userRepository.findByUsername(authentication.getName())
+    public ResponseEntity<List<ConversationSummary>> getConversations(
+            Authentication authentication,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Taken before reading, so the tag is never newer than the data it is sent with
+        String etag = contentVersions.conversationListEtag(authentication.getName());
+        if (ContentVersions.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        UserCache.CachedUser user = userCache.findByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return ResponseEntity.ok(conversationRepository.findByUserOrderByStartedAtDesc(user));
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, MAX_CONVERSATION_PAGE)));
+        return ok(etag, conversationRepository.findSummariesByUserId(user.id(), pageRequest));
     }
 
     @GetMapping("/{id}/messages")
     public ResponseEntity<List<Message>> getMessages(@PathVariable Long id) {
-        Conversation conversation = conversationRepository.findById(id)
+        Conversation conversation = conversationRepository.findByIdAndDeletedAtIsNull(id)
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
         return ResponseEntity.ok(conversation.getMessages());
     }
 
+    /**
+     * Keyset-paginated history: the newest {@code limit} messages by default, or the
+     * page immediately before/after a message id. Always returned oldest first.
+     */
+    @GetMapping("/{id}/history")
+    public ResponseEntity<MessageHistoryPage> getHistory(
+            Authentication authentication,
+            @PathVariable("id") Long id,
+            @RequestParam(value = "before", required = false) Long before,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // A version known for this owner answers the revalidation without touching the database
+        String knownEtag = contentVersions.knownConversationEtag(id, authentication.getName());
+        if (ContentVersions.matches(ifNoneMatch, knownEtag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(knownEtag).build();
+        }
+        ConversationOwnerCache.ConversationRef conversation = conversationOwners.find(id)
+                .filter(c -> c.ownerUsername().equals(authentication.getName()))
+                .orElse(null);
+        if (conversation == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = contentVersions.conversationEtag(id, authentication.getName());
+        java.time.LocalDateTime since = MessageRepository.partitionFloor(conversation.startedAt());
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE));
+        // One extra row tells whether another page exists
+        PageRequest page = PageRequest.ofSize(pageSize + 1);
+
+        // Buffered messages are read first: one flushed in between shows up in the query instead
+        List<MessageView> pending = new ArrayList<>(messageWriteBehind.pending(id).stream()
+                .filter(m -> after != null ? m.id() > after : before == null || m.id() < before)
+                .map(MessageWriteBehind.PendingMessage::toView)
+                .toList());
+        List<MessageView> messages;
+        if (after != null) {
+            messages = new ArrayList<>(messageRepository.findViewsAfter(id, since, after, page));
+        } else {
+            messages = new ArrayList<>(messageRepository.findViewsBefore(id, since, before != null ? before : Long.MAX_VALUE, page));
+        }
+        // Months moved out of the database are read from the archive and merged the same way
+        pending.addAll(messageArchive.page(id, before, after, pageSize + 1));
+        if (!pending.isEmpty()) {
+            mergePending(messages, pending, after != null);
+            if (messages.size() > pageSize + 1) {
+                messages.subList(pageSize + 1, messages.size()).clear();
+            }
+        }
+        boolean hasMore = messages.size() > pageSize;
+        if (hasMore) {
+            messages.remove(messages.size() - 1);
+        }
+        if (after == null) {
+            Collections.reverse(messages);
+        }
+        return ok(etag, MessageHistoryPage.builder().messages(messages).hasMore(hasMore).build());
+    }
+
+    /** Adds buffered or archived rows not already read from the database, keeping the page's id order. */
+    private static void mergePending(List<MessageView> messages, List<MessageView> pending, boolean ascending) {
+        java.util.Set<Long> ids = new java.util.HashSet<>();
+        messages.forEach(m -> ids.add(m.getId()));
+        pending.stream().filter(m -> ids.add(m.getId())).forEach(messages::add);
+        Comparator<MessageView> byId = Comparator.comparing(MessageView::getId);
+        messages.sort(ascending ? byId : byId.reversed());
+    }
+
+    private static <T> ResponseEntity<T> ok(String etag, T body) {
+        // no-cache: the browser keeps the copy but revalidates it with If-None-Match every time
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        return (etag != null ? builder.eTag(etag) : builder).body(body);
+    }
+
     @PostMapping
     public ResponseEntity<Conversation> createConversation(Authentication authentication, @RequestBody String title) {
-        User user = userRepository.findByUsername(authentication.getName())
+        // By id, so the user comes from the second-level cache
+        User user = userCache.findByUsername(authentication.getName())
+                .flatMap(cached -> userRepository.findById(cached.id()))
                 .orElseThrow(() -> new RuntimeException("User not found"));
         Conversation conversation = Conversation.builder()
                 .user(user)
                 .title(title.replace("\"", "")) // Simple cleanup
                 .build();
-        return ResponseEntity.ok(conversationRepository.save(conversation));
+        Conversation saved = conversationRepository.save(conversation);
+        contentVersions.conversationChanged(saved.getId(), user.getUsername());
+        return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/{id}")
@@ -55,13 +193,13 @@ public class ConversationController {
             @PathVariable("id") Long id,
             @RequestBody RenameRequest request) {
 
-        System.out.println("DEBUG: Renaming conversation " + id + " to " + request.getTitle());
+        log.debug("Renaming conversation {} to {}", id, request.getTitle());
 
         if (request.getTitle() == null || request.getTitle().trim().isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
 
-        Conversation conversation = conversationRepository.findById(id)
+        Conversation conversation = conversationRepository.findByIdAndDeletedAtIsNull(id)
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
 
         // Security check: ensure user owns the conversation
@@ -70,7 +208,10 @@ public class ConversationController {
         }
 
         conversation.setTitle(request.getTitle().replace("\"", ""));
-        return ResponseEntity.ok(conversationRepository.save(conversation));
+        Conversation saved = conversationRepository.save(conversation);
+        conversationOwners.invalidate(id);
+        contentVersions.conversationChanged(id, authentication.getName());
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
@@ -78,9 +219,9 @@ public class ConversationController {
             Authentication authentication,
             @PathVariable("id") Long id) {
 
-        System.out.println("DEBUG: Deleting conversation " + id);
+        log.debug("Deleting conversation {}", id);
 
-        Conversation conversation = conversationRepository.findById(id)
+        Conversation conversation = conversationRepository.findByIdAndDeletedAtIsNull(id)
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
 
         // Security check: ensure user owns the conversation
@@ -88,7 +229,16 @@ public class ConversationController {
             return ResponseEntity.status(403).build();
         }
 
+        if (backgroundDelete) {
+            // Tombstoned now, messages are removed in batches afterwards
+            conversationDeletionService.delete(id);
+            contentVersions.conversationRemoved(id, authentication.getName());
+            return ResponseEntity.accepted().build();
+        }
         conversationRepository.delete(conversation);
+        conversationStats.forget(id);
+        conversationOwners.invalidate(id);
+        contentVersions.conversationRemoved(id, authentication.getName());
         return ResponseEntity.ok().build();
     }
 }
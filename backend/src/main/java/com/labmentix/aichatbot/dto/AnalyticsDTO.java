@@ -17,6 +17,9 @@ public class AnalyticsDTO {
     private long totalConversations;
     private Map<String, Long> messagesPerDay;
     private List<ConversationStat> topConversations;
+    private long dailyActiveUsers;
+    private long weeklyActiveUsers;
+    private EngagementDTO engagement; // Last 7 days
 
     @Data
     @Builder
@@ -0,0 +1,28 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchJobStatus {
+    private String jobId;
+    private State state;
+    private int total;
+    private int unique; // Distinct prompts actually sent upstream
+    private int completed;
+    private int failed;
+    private LocalDateTime createdAt;
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        CANCELLED
+    }
+}
@@ -0,0 +1,17 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a batch NDJSON file. The id is echoed on the result line and
+ * defaults to the line number.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchPrompt {
+    private String id;
+    private String prompt;
+}
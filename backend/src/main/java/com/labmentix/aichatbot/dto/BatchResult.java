@@ -0,0 +1,22 @@
+package com.labmentix.aichatbot.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    private String id;
+    private String prompt;
+    private String answer;
+    private String error;
+    // Progress of the whole job at the time this line was produced
+    private int completed;
+    private int total;
+}
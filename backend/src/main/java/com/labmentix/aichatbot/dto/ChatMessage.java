@@ -18,6 +18,8 @@ public class ChatMessage {
     private String attachmentUrl;
     private String attachmentType;
     private MessageStatus status;
+    private Long seq;
+    private Long retryAfterMs;
 
     public enum MessageType {
         CHAT,
@@ -25,6 +27,9 @@ public class ChatMessage {
         LEAVE,
         CONVERSATION_UPDATE,
         TYPING,
-        ERROR
+        ERROR,
+        CANCEL,
+        CANCELLED,
+        RATE_LIMITED
     }
 }
@@ -0,0 +1,21 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A broker message relayed between nodes. {@code user} is set for user
+ * destinations (/user/queue/...), otherwise {@code destination} is a plain topic.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClusterEnvelope {
+    private String origin;
+    private String user;
+    private String destination;
+    private ChatMessage payload;
+}
@@ -0,0 +1,21 @@
+package com.labmentix.aichatbot.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sidebar row for a conversation, read by a single aggregate query instead of
+ * loading the conversation with its messages.
+ */
+public interface ConversationSummary {
+    Long getId();
+
+    String getTitle();
+
+    LocalDateTime getStartedAt();
+
+    long getMessageCount();
+
+    LocalDateTime getLastMessageAt(); // Null for an empty conversation
+
+    String getLastMessagePreview();
+}
@@ -0,0 +1,39 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Approximate engagement figures for a date range, merged from per-day sketches:
+ * distinct counts are HyperLogLog estimates (about 2% error), percentiles are
+ * within 1% of the exact value.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EngagementDTO {
+    private String from;
+    private String to;
+    private long activeUsers;
+    private long activeConversations;
+    private Map<String, Long> activeUsersPerDay;
+    private Map<String, Long> conversationsPerDay;
+    private Percentiles responseTimeMs;
+    private Percentiles responseLength;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Percentiles {
+        private long count;
+        private double p50;
+        private double p95;
+        private double p99;
+    }
+}
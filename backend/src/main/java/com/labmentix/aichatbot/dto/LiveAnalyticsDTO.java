@@ -0,0 +1,39 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Live counters of this node: totals since it started plus per-second points.
+ * The snapshot carries the last minute, frames on the analytics topic only the
+ * seconds completed since the previous frame.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveAnalyticsDTO {
+    private long startedAt; // Epoch millis
+    private long userMessages;
+    private long aiMessages;
+    private long responses;
+    private long failedResponses;
+    private List<Point> points;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private long second; // Epoch seconds
+        private long userMessages;
+        private long aiMessages;
+        private long responses;
+        private long failedResponses;
+        private long avgResponseMs;
+    }
+}
@@ -0,0 +1,17 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageHistoryPage {
+    private List<MessageView> messages; // Oldest first
+    private boolean hasMore; // More messages exist beyond the requested cursor
+}
@@ -0,0 +1,28 @@
+package com.labmentix.aichatbot.dto;
+
+import com.labmentix.aichatbot.model.MessageStatus;
+import com.labmentix.aichatbot.model.MessageType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a message for history pages. The sender is reduced
+ * to its username (null for AI messages) so no user entity is loaded.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MessageView {
+    private Long id;
+    private String content;
+    private String sender;
+    private MessageType type;
+    private MessageStatus status;
+    private LocalDateTime timestamp;
+    private Long seq;
+    private String attachmentUrl;
+    private String attachmentType;
+}
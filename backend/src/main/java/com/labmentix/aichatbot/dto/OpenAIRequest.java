@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 
 @Data
@@ -15,6 +16,8 @@ public class OpenAIRequest {
     private List<Message> messages;
     private Double temperature;
     private Integer max_tokens;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stream;
 
     @Data
     @AllArgsConstructor
@@ -20,6 +20,7 @@ public class OpenAIResponse {
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Choice {
         private Message message;
+        private Message delta; // Set instead of message on streamed chunks
         private String finish_reason;
         private Integer index;
     }
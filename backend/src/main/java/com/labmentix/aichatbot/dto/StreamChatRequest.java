@@ -0,0 +1,13 @@
+package com.labmentix.aichatbot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StreamChatRequest {
+    private String prompt;
+    private Long conversationId; // Optional, a new conversation is started when absent
+}
@@ -27,6 +27,19 @@ public class Conversation {
     private String title;
     private LocalDateTime startedAt;
 
+    // Maintained in SQL by ConversationStatsService alongside every message insert/delete
+    @Column(insertable = false, updatable = false)
+    private Long messageCount;
+
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime lastMessageAt;
+
+    // Tombstone: set on delete, the rows themselves are reclaimed in the background
+    // Only ever written by ConversationDeletionService, so a concurrent save cannot undo it
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
     @PrePersist
     protected void onCreate() {
         if (startedAt == null)
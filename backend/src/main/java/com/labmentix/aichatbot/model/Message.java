@@ -14,8 +14,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 public class Message {
+    // Block-allocated (pooled-lo, see MessageIdAllocator) so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_ids")
+    @SequenceGenerator(name = "message_ids", sequenceName = "message_ids", allocationSize = 50)
     private Long id;
 
     @Column(columnDefinition = "TEXT")
@@ -23,6 +25,9 @@ public class Message {
 
     private LocalDateTime timestamp;
 
+    // Monotonic per conversation, used by clients to resume after a reconnect
+    private Long seq;
+
     @ManyToOne
     @JoinColumn(name = "sender_id")
     private User sender;
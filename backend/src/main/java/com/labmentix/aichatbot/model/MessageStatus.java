@@ -4,5 +4,6 @@ public enum MessageStatus {
     SENT,
     PROCESSING,
     RECEIVED,
-    ERROR
+    ERROR,
+    CANCELLED
 }
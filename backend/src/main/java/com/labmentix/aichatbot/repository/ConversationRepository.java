@@ -10,8 +10,22 @@ import org.springframework.data.jpa.repository.Query;
 
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
-    List<Conversation> findByUserOrderByStartedAtDesc(User user);
+    java.util.Optional<Conversation> findFirstByUserAndDeletedAtIsNullOrderByStartedAtDesc(User user);
 
-    @Query("SELECT c FROM Conversation c JOIN c.messages m GROUP BY c ORDER BY COUNT(m) DESC")
-    List<Conversation> findTopConversations(org.springframework.data.domain.Pageable pageable);
+    java.util.Optional<Conversation> findByIdAndDeletedAtIsNull(Long id);
+
+    @Query(value = "SELECT id FROM conversations WHERE deleted_at IS NOT NULL", nativeQuery = true)
+    List<Long> findTombstonedIds();
+
+    // One statement for the sidebar: maintained counters plus the latest message, newest activity first
+    @Query(value = "SELECT c.id AS id, c.title AS title, c.started_at AS startedAt, "
+            + "c.message_count AS messageCount, c.last_message_at AS lastMessageAt, "
+            + "(SELECT SUBSTRING(lm.content, 1, 120) FROM messages lm WHERE lm.conversation_id = c.id "
+            + "ORDER BY lm.id DESC LIMIT 1) AS lastMessagePreview "
+            + "FROM conversations c "
+            + "WHERE c.user_id = :userId AND c.deleted_at IS NULL "
+            + "ORDER BY COALESCE(c.last_message_at, c.started_at) DESC, c.id DESC", nativeQuery = true)
+    List<com.labmentix.aichatbot.dto.ConversationSummary> findSummariesByUserId(
+            @org.springframework.data.repository.query.Param("userId") Long userId,
+            org.springframework.data.domain.Pageable pageable);
 }
@@ -2,13 +2,47 @@ package com.labmentix.aichatbot.repository;
 
 import com.labmentix.aichatbot.model.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import java.time.LocalDateTime;
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    List<Message> findByConversationId(Long conversationId);
+    // On Postgres messages are partitioned by month. A message is never older than its conversation, so
+    // queries of one conversation also take a lower timestamp bound and skip the partitions before it.
+    static LocalDateTime partitionFloor(LocalDateTime conversationStartedAt) {
+        // A day of slack for rows stamped by the database clock or another zone
+        return conversationStartedAt != null ? conversationStartedAt.minusDays(1) : LocalDateTime.of(1970, 1, 1, 0, 0);
+    }
 
-    List<Message> findAllByTimestampAfter(LocalDateTime timestamp);
+    List<Message> findByConversationId(Long conversationId);
 
     long countByType(com.labmentix.aichatbot.model.MessageType type);
+
+    @Query("SELECT COALESCE(MAX(m.seq), 0) FROM Message m WHERE m.conversation.id = :conversationId "
+            + "AND m.timestamp >= :since")
+    long findMaxSeq(@org.springframework.data.repository.query.Param("conversationId") Long conversationId,
+            @org.springframework.data.repository.query.Param("since") LocalDateTime since);
+
+    List<Message> findTop500ByConversationIdAndSeqGreaterThanAndTimestampGreaterThanEqualOrderBySeqAsc(
+            Long conversationId, Long seq, LocalDateTime since);
+
+    // Keyset pages over (conversation_id, id); the page size comes from the Pageable
+    String MESSAGE_VIEW = "SELECT new com.labmentix.aichatbot.dto.MessageView(m.id, m.content, s.username, m.type, "
+            + "m.status, m.timestamp, m.seq, m.attachmentUrl, m.attachmentType) FROM Message m LEFT JOIN m.sender s ";
+
+    @Query(MESSAGE_VIEW + "WHERE m.conversation.id = :conversationId AND m.timestamp >= :since "
+            + "AND m.id < :beforeId ORDER BY m.id DESC")
+    List<com.labmentix.aichatbot.dto.MessageView> findViewsBefore(
+            @org.springframework.data.repository.query.Param("conversationId") Long conversationId,
+            @org.springframework.data.repository.query.Param("since") LocalDateTime since,
+            @org.springframework.data.repository.query.Param("beforeId") Long beforeId,
+            org.springframework.data.domain.Pageable pageable);
+
+    @Query(MESSAGE_VIEW + "WHERE m.conversation.id = :conversationId AND m.timestamp >= :since "
+            + "AND m.id > :afterId ORDER BY m.id ASC")
+    List<com.labmentix.aichatbot.dto.MessageView> findViewsAfter(
+            @org.springframework.data.repository.query.Param("conversationId") Long conversationId,
+            @org.springframework.data.repository.query.Param("since") LocalDateTime since,
+            @org.springframework.data.repository.query.Param("afterId") Long afterId,
+            org.springframework.data.domain.Pageable pageable);
 }
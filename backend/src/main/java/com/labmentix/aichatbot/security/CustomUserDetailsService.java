@@ -1,30 +1,59 @@
 package com.labmentix.aichatbot.security;
 
-import com.labmentix.aichatbot.model.User;
 import com.labmentix.aichatbot.repository.UserRepository;
+import com.labmentix.aichatbot.service.UserCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.List;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    @Autowired
+    private UserCache userCache;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        UserCache.CachedUser user = userCache.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
 
         return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                Collections.emptyList() // Authorities can be added here if needed
+                user.username(),
+                user.password(),
+                user.role() != null
+                        ? List.of(new SimpleGrantedAuthority(user.role()))
+                        : Collections.emptyList()
         );
     }
+
+    /**
+     * Called after a successful login whose stored hash is cheaper than the current
+     * encoder's, with the password re-encoded at the current cost.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.findByUsername(user.getUsername()).ifPresent(entity -> {
+            entity.setPassword(newPassword);
+            userRepository.save(entity);
+            meterRegistry.counter("auth.hash.upgraded").increment();
+        });
+        userCache.invalidate(user.getUsername());
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
+                .build();
+    }
 }
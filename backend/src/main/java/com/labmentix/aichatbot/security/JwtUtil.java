@@ -1,6 +1,7 @@
 package com.labmentix.aichatbot.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -19,8 +20,26 @@ public class JwtUtil {
     // Ideally this should be in application.properties or environment variable
     private static final String SECRET_KEY = "super_secret_key_which_must_be_long_enough_for_security";
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // Both are immutable and thread-safe, so they are built once instead of per call
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
+    /** What a verified token says: its subject and when it expires. */
+    public record VerifiedToken(String username, long expiresAtMillis) {
+        public boolean isExpired() {
+            return expiresAtMillis <= System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Checks signature and expiry with a single parse.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(claims.getSubject(), expiration != null ? expiration.getTime() : Long.MAX_VALUE);
     }
 
     public String extractUsername(String token) {
@@ -37,14 +56,10 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
-    private Boolean isTokenExpired(String token) {
+    public Boolean isTokenExpired(String token) {
         return extractExpiration(token).before(new Date());
     }
 
@@ -59,12 +74,12 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // 10 hours
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        VerifiedToken verified = verify(token);
+        return verified.username().equals(userDetails.getUsername()) && !verified.isExpired();
     }
 }
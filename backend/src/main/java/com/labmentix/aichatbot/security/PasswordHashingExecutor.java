@@ -0,0 +1,105 @@
+package com.labmentix.aichatbot.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing (login checks, registrations, cost upgrades) on a few
+ * dedicated threads, so a burst of BCrypt work queues here instead of holding
+ * servlet threads that chat and history requests need.
+ *
+ * The queue is bounded. When it is full, or a task waited longer than
+ * {@code security.password.max-queue-wait-ms}, the future fails with
+ * {@link RejectedExecutionException} right away and the caller answers 429.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    @Value("${security.password.hash-threads:0}")
+    private int threads;
+
+    @Value("${security.password.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${security.password.max-queue-wait-ms:2000}")
+    private long maxQueueWaitMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor workers;
+    private Timer queueWait;
+    private Timer hashTime;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "password-hash-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.hash.queued", workers, w -> w.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("auth.hash.queue.wait")
+                .description("Time password hashing tasks spent queued")
+                .register(meterRegistry);
+        this.hashTime = Timer.builder("auth.hash.time")
+                .description("Time spent hashing or checking a password, including the surrounding lookup")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.hash.rejected")
+                .description("Logins and registrations turned away because hashing was saturated")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long enqueued = System.nanoTime();
+        try {
+            workers.execute(() -> {
+                long waited = System.nanoTime() - enqueued;
+                queueWait.record(waited, TimeUnit.NANOSECONDS);
+                if (TimeUnit.NANOSECONDS.toMillis(waited) > maxQueueWaitMs) {
+                    // The client is likely gone or retrying already; don't spend the CPU
+                    rejectedCounter.increment();
+                    result.completeExceptionally(new RejectedExecutionException("Password hashing queue wait exceeded"));
+                    return;
+                }
+                try {
+                    result.complete(hashTime.record(task));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,132 @@
+package com.labmentix.aichatbot.security;
+
+import com.labmentix.aichatbot.service.ConversationOwnerCache;
+import com.labmentix.aichatbot.service.LiveAnalyticsService;
+import com.labmentix.aichatbot.service.UserCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Authenticates STOMP sessions and authorizes what they may subscribe and send to.
+ *
+ * The SockJS handshake under /ws/** is not covered by {@link JwtAuthenticationFilter},
+ * so the token travels in the CONNECT frame's Authorization header instead. The user
+ * is looked up once here and kept on the session as a {@link StompUserPrincipal}.
+ */
+@Component
+@Slf4j
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    public static final String CONVERSATION_TOPIC_PREFIX = "/topic/conversation.";
+    private static final String ADMIN_ROLE = "ROLE_ADMIN";
+    public static final String SESSION_USER_ID = "userId";
+
+    @Autowired
+    private TokenVerifier tokenVerifier;
+
+    @Autowired
+    private ConversationOwnerCache conversationOwners;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT -> {
+                StompUserPrincipal principal = authenticate(accessor);
+                accessor.setUser(principal);
+                Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+                if (sessionAttributes != null) {
+                    sessionAttributes.put(SESSION_USER_ID, principal.userId());
+                    sessionAttributes.put("username", principal.username());
+                }
+            }
+            case SUBSCRIBE -> authorizeSubscription(accessor.getUser(), accessor.getDestination());
+            case SEND -> authorizeSend(accessor.getUser(), accessor.getDestination());
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private StompUserPrincipal authenticate(StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new AccessDeniedException("Missing bearer token on STOMP CONNECT");
+        }
+        String token = header.substring(7);
+        try {
+            String username = tokenVerifier.verify(token).username();
+            if (username == null) {
+                throw new AccessDeniedException("Invalid token on STOMP CONNECT");
+            }
+            return userCache.findByUsername(username)
+                    .map(user -> new StompUserPrincipal(user.id(), user.username()))
+                    .orElseThrow(() -> new AccessDeniedException("Unknown user on STOMP CONNECT"));
+        } catch (AccessDeniedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AccessDeniedException("Invalid token on STOMP CONNECT");
+        }
+    }
+
+    private void authorizeSubscription(Principal user, String destination) {
+        if (!(user instanceof StompUserPrincipal principal) || destination == null) {
+            throw new AccessDeniedException("Unauthenticated subscription");
+        }
+        if (destination.startsWith("/user/queue/")) {
+            return; // Resolved to the session's own user by the user destination handler
+        }
+        if (destination.equals(LiveAnalyticsService.TOPIC)) {
+            boolean admin = userCache.findByUsername(principal.username())
+                    .map(u -> ADMIN_ROLE.equals(u.role()))
+                    .orElse(false);
+            if (admin) {
+                return;
+            }
+        }
+        if (destination.startsWith(CONVERSATION_TOPIC_PREFIX)) {
+            Long conversationId = parseConversationId(destination);
+            if (conversationId != null && conversationOwners.isOwner(conversationId, principal.userId())) {
+                return;
+            }
+        }
+        log.warn("Rejected subscription of {} to {}", user.getName(), destination);
+        throw new AccessDeniedException("Not allowed to subscribe to " + destination);
+    }
+
+    private void authorizeSend(Principal user, String destination) {
+        // Clients may only talk to application handlers, never publish to broker topics directly
+        if (user == null || destination == null || !destination.startsWith("/app/")) {
+            throw new AccessDeniedException("Not allowed to send to " + destination);
+        }
+    }
+
+    public static Long parseConversationId(String destination) {
+        try {
+            return Long.valueOf(destination.substring(CONVERSATION_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static String conversationTopic(Long conversationId) {
+        return CONVERSATION_TOPIC_PREFIX + conversationId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.labmentix.aichatbot.security;
+
+import java.security.Principal;
+
+/**
+ * Identity of an authenticated STOMP session, resolved once on CONNECT so that
+ * per-message handling needs no user lookup.
+ */
+public record StompUserPrincipal(Long userId, String username) implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
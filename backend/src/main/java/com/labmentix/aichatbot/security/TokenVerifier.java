@@ -0,0 +1,77 @@
+package com.labmentix.aichatbot.security;
+
+import com.labmentix.aichatbot.service.BoundedCache;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * Bearer token verification for every HTTP request and STOMP CONNECT.
+ *
+ * A client sends the same token for hours, so tokens that passed
+ * {@link JwtUtil#verify} are remembered by their SHA-256 digest (the token
+ * itself is not kept). A repeat costs one hash and a lookup instead of
+ * signature checking and JSON parsing. A cached token still stops working at
+ * its {@code exp}.
+ */
+@Component
+public class TokenVerifier {
+
+    // The 32 bytes of a SHA-256 digest, compared by value
+    private record Digest(long a, long b, long c, long d) {
+    }
+
+    @Value("${security.jwt.verified-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${security.jwt.verified-cache.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BoundedCache<Digest, JwtUtil.VerifiedToken> verified;
+
+    @PostConstruct
+    void init() {
+        verified = new BoundedCache<>("verified-tokens", maxSize, Duration.ofSeconds(ttlSeconds));
+        verified.bindTo(meterRegistry);
+    }
+
+    /**
+     * The token's subject and expiry.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public JwtUtil.VerifiedToken verify(String token) {
+        Digest digest = digest(token);
+        JwtUtil.VerifiedToken result = verified.get(digest, key -> jwtUtil.verify(token));
+        if (result.isExpired()) {
+            verified.invalidate(digest);
+            throw new ExpiredJwtException(null, null, "Token expired");
+        }
+        return result;
+    }
+
+    private static Digest digest(String token) {
+        try {
+            ByteBuffer hash = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+            return new Digest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
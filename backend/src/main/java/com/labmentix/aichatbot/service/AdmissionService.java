@@ -0,0 +1,131 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.security.StompUserPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for chat messages: a per-user token bucket decides whether
+ * a message is accepted at all, and accepted work is queued on the
+ * {@link FairShareScheduler}. Rejections carry a retry-after hint.
+ */
+@Service
+public class AdmissionService {
+
+    @Value("${chat.admission.burst:5}")
+    private int burst;
+
+    @Value("${chat.admission.refill-per-minute:20}")
+    private int refillPerMinute;
+
+    // Per-user weights, e.g. chat.admission.weights={'alice':2}
+    @Value("#{${chat.admission.weights:{:}}}")
+    private Map<String, Integer> weights;
+
+    @Autowired
+    private FairShareScheduler fairShareScheduler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public record Decision(boolean admitted, long retryAfterMs, String reason) {
+        static Decision admit() {
+            return new Decision(true, 0, null);
+        }
+    }
+
+    public Decision admit(StompUserPrincipal principal, Supplier<CompletableFuture<?>> work) {
+        TokenBucket bucket = buckets.computeIfAbsent(principal.userId(), id -> new TokenBucket(burst,
+                refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1)));
+
+        long waitNanos = bucket.tryConsume(System.nanoTime());
+        if (waitNanos > 0) {
+            return reject(principal, "rate", TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+        }
+
+        int weight = weights.getOrDefault(principal.username(), 1);
+        if (!fairShareScheduler.submit(principal.userId(), weight, work)) {
+            // Give the token back, the message was never accepted
+            bucket.refund();
+            return reject(principal, "queue", TimeUnit.SECONDS.toMillis(1));
+        }
+
+        counter("chat.admission.admitted", principal.username(), null).increment();
+        return Decision.admit();
+    }
+
+    /** Drops buckets that have refilled completely, they are equivalent to a new bucket. */
+    @Scheduled(fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.entrySet().removeIf(e -> e.getValue().isFull(now));
+    }
+
+    private Decision reject(StompUserPrincipal principal, String reason, long retryAfterMs) {
+        counter("chat.admission.rejected", principal.username(), reason).increment();
+        return new Decision(false, retryAfterMs, reason);
+    }
+
+    private Counter counter(String name, String user, String reason) {
+        Counter.Builder builder = Counter.builder(name).tag("user", user);
+        if (reason != null) {
+            builder.tag("reason", reason);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    /** Lock-free token bucket; the state is swapped atomically as an immutable pair. */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private final AtomicReference<State> state;
+
+        private record State(double tokens, long updatedAt) {
+        }
+
+        TokenBucket(double capacity, double tokensPerNano) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+        }
+
+        /** Takes one token; returns 0 on success or the nanos until a token is available. */
+        long tryConsume(long now) {
+            while (true) {
+                State current = state.get();
+                double tokens = refilled(current, now);
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / tokensPerNano);
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, now))) {
+                    return 0;
+                }
+            }
+        }
+
+        void refund() {
+            state.updateAndGet(s -> new State(Math.min(capacity, s.tokens() + 1), s.updatedAt()));
+        }
+
+        boolean isFull(long now) {
+            return refilled(state.get(), now) >= capacity;
+        }
+
+        private double refilled(State s, long now) {
+            return Math.min(capacity, s.tokens() + Math.max(0, now - s.updatedAt()) * tokensPerNano);
+        }
+    }
+}
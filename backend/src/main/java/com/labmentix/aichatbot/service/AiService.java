@@ -1,5 +1,7 @@
 package com.labmentix.aichatbot.service;
 
+import reactor.core.publisher.Flux;
+
 import java.util.concurrent.CompletableFuture;
 
 public interface AiService {
@@ -10,5 +12,19 @@ public interface AiService {
     CompletableFuture<String> generateResponse(String userMessage, String attachmentUrl, String attachmentType,
             String extractedText);
 
+    /**
+     * Same as above, but the upstream request is attached to {@code generation}
+     * so it can be cancelled while in flight.
+     */
+    CompletableFuture<String> generateResponse(String userMessage, String attachmentUrl, String attachmentType,
+            String extractedText, GenerationHandle generation);
+
+    /**
+     * Streams the reply to {@code userMessage} token chunk by token chunk. The
+     * caller supplies the retrieved context; cancelling the subscription aborts
+     * the upstream request.
+     */
+    Flux<String> streamResponse(String userMessage, String context);
+
     CompletableFuture<String> generateTitle(String firstMessage);
 }
@@ -3,17 +3,24 @@ package com.labmentix.aichatbot.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.labmentix.aichatbot.dto.OpenAIRequest;
 import com.labmentix.aichatbot.dto.OpenAIResponse;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -26,17 +33,29 @@ public class AiServiceImpl implements AiService {
     @Value("${groq.api.url}")
     private String apiUrl;
 
+    // Using llama-3.3-70b-versatile for high performance
+    private static final String MODEL = "llama-3.3-70b-versatile";
+
     @Autowired
     private KnowledgeBaseService knowledgeBaseService;
 
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private WebClient webClient;
 
     public AiServiceImpl() {
         this.httpClient = HttpClient.newHttpClient();
         this.objectMapper = new ObjectMapper();
     }
 
+    @PostConstruct
+    public void init() {
+        this.webClient = webClientBuilder.build();
+    }
+
     @Override
     @Async
     public CompletableFuture<String> generateResponse(String userMessage) {
@@ -53,6 +72,13 @@ public class AiServiceImpl implements AiService {
     @Async
     public CompletableFuture<String> generateResponse(String userMessage, String attachmentUrl, String attachmentType,
             String extractedText) {
+        return generateResponse(userMessage, attachmentUrl, attachmentType, extractedText, null);
+    }
+
+    @Override
+    @Async
+    public CompletableFuture<String> generateResponse(String userMessage, String attachmentUrl, String attachmentType,
+            String extractedText, GenerationHandle generation) {
         try {
             log.info("Searching context for message: {}", userMessage);
             String context = "";
@@ -62,39 +88,22 @@ public class AiServiceImpl implements AiService {
                 log.warn("Knowledge base search failed, proceeding with standard chat: {}", e.getMessage());
             }
 
-            String enhancedPrompt = userMessage;
-            if (context != null && !context.isEmpty()) {
-                enhancedPrompt = "Use the following context to answer the user's question. If the answer is not in the context, use your general knowledge but mention that it's not in the documents.\n\n"
-                        + "CONTEXT:\n" + context + "\n\n"
-                        + "USER QUESTION: " + userMessage;
-            }
+            String enhancedPrompt = buildPrompt(userMessage, context, attachmentUrl, extractedText);
 
-            if (attachmentUrl != null && !attachmentUrl.isEmpty()) {
-                if (extractedText != null && !extractedText.isEmpty()) {
-                    // Limit text to 4000 chars for faster processing
-                    String limitedText = extractedText.length() > 4000
-                            ? extractedText.substring(0, 4000) + "...\n[Content truncated for performance]"
-                            : extractedText;
-
-                    enhancedPrompt += "\n\n[DOCUMENT CONTENT FROM ATTACHED FILE]:\n" + limitedText
-                            + "\n[END OF DOCUMENT]\n\n";
-                    enhancedPrompt += "The above is the text content extracted from the user's attached PDF file. Please analyze it based on the user's request.";
-                } else {
-                    enhancedPrompt += "\n\n[SYSTEM NOTE: The user has attached a file at " + attachmentUrl
-                            + ". The file content could not be extracted. Please acknowledge the attachment and ask the user to describe it or add it to the Knowledge Base for analysis.]";
-                }
+            if (generation != null && generation.isCancelled()) {
+                return CompletableFuture.failedFuture(new CancellationException("Generation cancelled"));
             }
 
             log.info("Sending request to Groq with context attached");
 
             // Create Groq Request (OpenAI Compatible)
-            // Using llama-3.3-70b-versatile for high performance
             OpenAIRequest.Message message = new OpenAIRequest.Message("user", enhancedPrompt);
             OpenAIRequest groqRequest = new OpenAIRequest(
-                    "llama-3.3-70b-versatile",
+                    MODEL,
                     List.of(message),
                     0.7,
-                    4096);
+                    4096,
+                    null);
 
             String requestBody = objectMapper.writeValueAsString(groqRequest);
 
@@ -105,8 +114,15 @@ public class AiServiceImpl implements AiService {
                     .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                     .build();
 
-            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenApply(response -> {
+            CompletableFuture<HttpResponse<String>> upstream = httpClient.sendAsync(request,
+                    HttpResponse.BodyHandlers.ofString());
+            if (generation != null) {
+                generation.attach(upstream);
+            }
+
+            // Completes on an HTTP client thread; keep the caller's correlation id for the logs below
+            return upstream
+                    .thenApply(Correlation.function(response -> {
                         log.info("Groq Response Status: {}", response.statusCode());
 
                         if (response.statusCode() != 200) {
@@ -129,13 +145,78 @@ public class AiServiceImpl implements AiService {
                             log.error("Error parsing response", e);
                             return "Error parsing AI response: " + e.getMessage();
                         }
-                    });
+                    }));
         } catch (Exception e) {
             log.error("Error generating response", e);
             return CompletableFuture.completedFuture("Error: " + e.getMessage());
         }
     }
 
+    @Override
+    public Flux<String> streamResponse(String userMessage, String context) {
+        OpenAIRequest groqRequest = new OpenAIRequest(
+                MODEL,
+                List.of(new OpenAIRequest.Message("user", buildPrompt(userMessage, context, null, null))),
+                0.7,
+                4096,
+                true);
+
+        // Groq streams OpenAI-style chunks as SSE and ends with a literal [DONE]; cancelling
+        // the subscription closes the upstream connection
+        return webClient.post()
+                .uri(apiUrl)
+                .header("Authorization", "Bearer " + apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(groqRequest)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .mapNotNull(ServerSentEvent::data)
+                .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                .flatMapIterable(this::parseDelta);
+    }
+
+    private List<String> parseDelta(String chunk) {
+        try {
+            OpenAIResponse responseDto = objectMapper.readValue(chunk, OpenAIResponse.class);
+            if (responseDto.getChoices() != null && !responseDto.getChoices().isEmpty()) {
+                OpenAIResponse.Message delta = responseDto.getChoices().get(0).getDelta();
+                if (delta != null && delta.getContent() != null && !delta.getContent().isEmpty()) {
+                    return List.of(delta.getContent());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Skipping unparseable stream chunk: {}", e.getMessage());
+        }
+        return List.of();
+    }
+
+    private String buildPrompt(String userMessage, String context, String attachmentUrl, String extractedText) {
+        String enhancedPrompt = userMessage;
+        if (context != null && !context.isEmpty()) {
+            enhancedPrompt = "Use the following context to answer the user's question. If the answer is not in the context, use your general knowledge but mention that it's not in the documents.\n\n"
+                    + "CONTEXT:\n" + context + "\n\n"
+                    + "USER QUESTION: " + userMessage;
+        }
+
+        if (attachmentUrl != null && !attachmentUrl.isEmpty()) {
+            if (extractedText != null && !extractedText.isEmpty()) {
+                // Limit text to 4000 chars for faster processing
+                String limitedText = extractedText.length() > 4000
+                        ? extractedText.substring(0, 4000) + "...\n[Content truncated for performance]"
+                        : extractedText;
+
+                enhancedPrompt += "\n\n[DOCUMENT CONTENT FROM ATTACHED FILE]:\n" + limitedText
+                        + "\n[END OF DOCUMENT]\n\n";
+                enhancedPrompt += "The above is the text content extracted from the user's attached PDF file. Please analyze it based on the user's request.";
+            } else {
+                enhancedPrompt += "\n\n[SYSTEM NOTE: The user has attached a file at " + attachmentUrl
+                        + ". The file content could not be extracted. Please acknowledge the attachment and ask the user to describe it or add it to the Knowledge Base for analysis.]";
+            }
+        }
+        return enhancedPrompt;
+    }
+
     @Override
     @Async
     public CompletableFuture<String> generateTitle(String firstMessage) {
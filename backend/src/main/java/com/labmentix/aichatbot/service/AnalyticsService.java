@@ -1,20 +1,16 @@
 package com.labmentix.aichatbot.service;
 
 import com.labmentix.aichatbot.dto.AnalyticsDTO;
-import com.labmentix.aichatbot.model.Message;
+import com.labmentix.aichatbot.dto.EngagementDTO;
+import com.labmentix.aichatbot.model.MessageType;
 import com.labmentix.aichatbot.repository.ConversationRepository;
-import com.labmentix.aichatbot.repository.MessageRepository;
 import com.labmentix.aichatbot.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -24,12 +20,20 @@ public class AnalyticsService {
     private UserRepository userRepository;
 
     @Autowired
-    private MessageRepository messageRepository;
+    private ConversationRepository conversationRepository;
 
     @Autowired
-    private ConversationRepository conversationRepository;
+    private MessageRollupService messageRollups;
+
+    @Autowired
+    private ConversationStatsService conversationStats;
+
+    @Autowired
+    private EngagementSketchService engagementSketches;
 
     public AnalyticsDTO getStats() {
+        // One date for every section, so a request that crosses midnight stays consistent
+        LocalDate today = LocalDate.now();
         long totalUsers = 0, totalMessages = 0, totalConversations = 0;
         try {
             totalUsers = userRepository.count();
@@ -37,7 +41,7 @@ public class AnalyticsService {
             log.error("Error counting users", e);
         }
         try {
-            totalMessages = messageRepository.count();
+            totalMessages = messageRollups.totalMessages();
         } catch (Exception e) {
             log.error("Error counting messages", e);
         }
@@ -50,7 +54,7 @@ public class AnalyticsService {
         // Messages per day for the last 7 days
         Map<String, Long> messagesPerDay = new HashMap<>();
         try {
-            messagesPerDay = getMessagesPerDay(7);
+            messagesPerDay = getMessagesPerDay(today, 7);
         } catch (Exception e) {
             log.error("Error getting messages per day", e);
         }
@@ -58,46 +62,43 @@ public class AnalyticsService {
         // Top 5 conversations
         List<AnalyticsDTO.ConversationStat> topConversations = new ArrayList<>();
         try {
-            topConversations = conversationRepository
-                    .findTopConversations(PageRequest.of(0, 5))
-                    .stream()
-                    .map(c -> AnalyticsDTO.ConversationStat.builder()
-                            .title(c.getTitle())
-                            .messageCount(c.getMessages() != null ? c.getMessages().size() : 0)
-                            .build())
-                    .collect(Collectors.toList());
+            topConversations = conversationStats.top(5);
         } catch (Exception e) {
             log.error("Error getting top conversations", e);
         }
 
+        // Active users and reply percentiles of the last 7 days, from the daily sketches
+        EngagementDTO engagement = null;
+        try {
+            engagement = getEngagement(today.minusDays(6), today);
+        } catch (Exception e) {
+            log.error("Error getting engagement sketches", e);
+        }
+
         return AnalyticsDTO.builder()
                 .totalUsers(totalUsers)
                 .totalMessages(totalMessages)
                 .totalConversations(totalConversations)
                 .messagesPerDay(messagesPerDay)
                 .topConversations(topConversations)
+                .dailyActiveUsers(engagement != null ? engagement.getActiveUsersPerDay().getOrDefault(today.toString(), 0L) : 0L)
+                .weeklyActiveUsers(engagement != null ? engagement.getActiveUsers() : 0L)
+                .engagement(engagement)
                 .build();
     }
 
-    private Map<String, Long> getMessagesPerDay(int days) {
-        LocalDateTime start = LocalDateTime.now().minusDays(days).withHour(0).withMinute(0).withSecond(0);
-        List<Message> recentMessages = messageRepository.findAllByTimestampAfter(start);
-
-        Map<String, Long> stats = new TreeMap<>(); // Sorted by date string
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
-        // Initialize all days with 0
-        for (int i = 0; i < days; i++) {
-            stats.put(LocalDate.now().minusDays(i).format(formatter), 0L);
-        }
+    private Map<String, Long> getMessagesPerDay(LocalDate today, int days) {
+        return messageRollups.countsByDate(today.minusDays(days - 1L), today, MessageRollupService.Granularity.DAY,
+                null, null);
+    }
 
-        recentMessages.forEach(m -> {
-            String date = m.getTimestamp().format(formatter);
-            if (stats.containsKey(date)) {
-                stats.put(date, stats.get(date) + 1);
-            }
-        });
+    public EngagementDTO getEngagement(LocalDate from, LocalDate to) {
+        return engagementSketches.engagement(from, to);
+    }
 
-        return stats;
+    /** Message counts for any range and granularity, served from the daily rollups. */
+    public Map<String, Long> getMessageCounts(LocalDate from, LocalDate to, MessageRollupService.Granularity granularity,
+            MessageType type, Long userId) {
+        return messageRollups.countsByDate(from, to, granularity, type, userId);
     }
 }
@@ -5,6 +5,7 @@ import com.labmentix.aichatbot.dto.AuthResponse;
 import com.labmentix.aichatbot.model.User;
 import com.labmentix.aichatbot.repository.UserRepository;
 import com.labmentix.aichatbot.security.JwtUtil;
+import com.labmentix.aichatbot.security.PasswordHashingExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -12,6 +13,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class AuthService {
 
@@ -30,18 +33,33 @@ public class AuthService {
     @Autowired
     private com.labmentix.aichatbot.security.CustomUserDetailsService userDetailsService;
 
-    public AuthResponse register(AuthRequest request) {
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashing;
+
+    /**
+     * Completes on the password hashing threads, or fails with
+     * {@link java.util.concurrent.RejectedExecutionException} when they are saturated.
+     */
+    public CompletableFuture<AuthResponse> register(AuthRequest request) {
         if (userRepository.findByUsername(request.getUsername()).isPresent()) {
-            throw new RuntimeException("Username already exists");
+            return CompletableFuture.failedFuture(new RuntimeException("Username already exists"));
         }
+        return passwordHashing.submit(() -> passwordEncoder.encode(request.getPassword()))
+                .thenApply(hash -> createUser(request.getUsername(), hash));
+    }
 
+    private AuthResponse createUser(String username, String passwordHash) {
         User user = User.builder()
-                .username(request.getUsername())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .username(username)
+                .password(passwordHash)
                 .role("ROLE_USER")
                 .build();
 
         userRepository.save(user);
+        userCache.invalidate(user.getUsername());
 
         UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
         String token = jwtUtil.generateToken(userDetails);
@@ -53,7 +71,16 @@ public class AuthService {
 
     }
 
-    public AuthResponse login(AuthRequest request) {
+    /**
+     * Checks the password on the password hashing threads, where an outdated hash
+     * is also re-encoded at the current cost. Fails with
+     * {@link java.util.concurrent.RejectedExecutionException} when they are saturated.
+     */
+    public CompletableFuture<AuthResponse> login(AuthRequest request) {
+        return passwordHashing.submit(() -> authenticate(request));
+    }
+
+    private AuthResponse authenticate(AuthRequest request) {
         authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
 
@@ -0,0 +1,429 @@
+package com.labmentix.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.labmentix.aichatbot.dto.BatchJobStatus;
+import com.labmentix.aichatbot.dto.BatchPrompt;
+import com.labmentix.aichatbot.dto.BatchResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Offline question answering over the knowledge base.
+ *
+ * Identical prompts of a job are sent upstream once and their answer is fanned
+ * out to every line that asked. A single dispatcher paces upstream calls evenly
+ * within {@code requests-per-minute}, the upstream limit it shares with
+ * interactive chat: chat calls of the last minute come off the batch budget.
+ * It pauses for the server's Retry-After on 429 and yields whenever the
+ * {@link FairShareScheduler} has interactive chat waiting, so batches only use
+ * capacity that live users are not asking for.
+ *
+ * Each user may have {@code max-active-jobs-per-user} running jobs and
+ * {@code max-queued-prompts-per-user} unanswered prompts, and all jobs together
+ * {@code max-queued-prompts}; a job that does not fit is rejected with
+ * {@link RejectedExecutionException}. Jobs live in memory and are dropped
+ * {@code retention-minutes} after finishing.
+ */
+@Service
+@Slf4j
+public class BatchInferenceService {
+
+    @Value("${chat.batch.requests-per-minute:30}")
+    private int requestsPerMinute;
+
+    @Value("${chat.batch.concurrency:4}")
+    private int concurrency;
+
+    @Value("${chat.batch.max-prompts:5000}")
+    private int maxPrompts;
+
+    @Value("${chat.batch.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${chat.batch.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${chat.batch.max-active-jobs-per-user:2}")
+    private int maxActiveJobsPerUser;
+
+    @Value("${chat.batch.max-queued-prompts-per-user:10000}")
+    private int maxQueuedPromptsPerUser;
+
+    @Value("${chat.batch.max-queued-prompts:50000}")
+    private int maxQueuedPrompts;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private KnowledgeBaseService knowledgeBaseService;
+
+    @Autowired
+    private FairShareScheduler fairShareScheduler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<WorkItem> work = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger queuedItems = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object admission = new Object();
+
+    private ScheduledExecutorService dispatcher;
+    private long nextPermitNanos; // Dispatcher thread only
+    private volatile long pausedUntilNanos;
+
+    private Counter completedCounter;
+    private Counter failedCounter;
+    private Counter deduplicatedCounter;
+    private Counter throttledCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        completedCounter = Counter.builder("chat.batch.prompts.completed").register(meterRegistry);
+        failedCounter = Counter.builder("chat.batch.prompts.failed").register(meterRegistry);
+        deduplicatedCounter = Counter.builder("chat.batch.prompts.deduplicated")
+                .description("Batch lines answered from an identical prompt of the same job")
+                .register(meterRegistry);
+        throttledCounter = Counter.builder("chat.batch.upstream.throttled")
+                .description("Upstream 429 responses that paused the batch dispatcher")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("chat.batch.jobs.rejected")
+                .description("Batch jobs turned away by the per-user or global queue limits")
+                .register(meterRegistry);
+        Gauge.builder("chat.batch.queued", queuedItems, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("chat.batch.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+
+        dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+        dispatcher.scheduleWithFixedDelay(this::dispatch, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Parses an NDJSON file of {@code {"id": ..., "prompt": ...}} lines and queues it.
+     *
+     * @throws RejectedExecutionException if the job exceeds the owner's or the global queue limits
+     */
+    public BatchJobStatus submit(String owner, InputStream ndjson) throws IOException {
+        // Normalized prompt -> ids of the lines asking it, in file order
+        Map<String, List<String>> idsByPrompt = new LinkedHashMap<>();
+        Map<String, String> promptText = new LinkedHashMap<>();
+        int total = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                BatchPrompt prompt;
+                try {
+                    prompt = objectMapper.readValue(line, BatchPrompt.class);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " is not a JSON object");
+                }
+                if (prompt.getPrompt() == null || prompt.getPrompt().isBlank()) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " has no prompt");
+                }
+                if (++total > maxPrompts) {
+                    throw new IllegalArgumentException("A batch may contain at most " + maxPrompts + " prompts");
+                }
+                String key = prompt.getPrompt().trim().replaceAll("\\s+", " ");
+                promptText.putIfAbsent(key, prompt.getPrompt().trim());
+                idsByPrompt.computeIfAbsent(key, k -> new ArrayList<>())
+                        .add(prompt.getId() != null ? prompt.getId() : String.valueOf(lineNumber));
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The batch file contains no prompts");
+        }
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), owner, total, idsByPrompt.size());
+        // Check and enqueue together, so concurrent uploads cannot both fit into the same room
+        synchronized (admission) {
+            admit(owner, job.unique);
+            jobs.put(job.id, job);
+            idsByPrompt.forEach((key, ids) -> work.addLast(new WorkItem(job, promptText.get(key), ids)));
+            queuedItems.addAndGet(idsByPrompt.size());
+        }
+        deduplicatedCounter.increment(total - idsByPrompt.size());
+
+        log.info("Queued batch {} for {}: {} prompts, {} unique", job.id, owner, total, idsByPrompt.size());
+        return job.status();
+    }
+
+    private void admit(String owner, int unique) {
+        int activeJobs = 0;
+        int ownerQueued = 0;
+        for (BatchJob job : jobs.values()) {
+            if (job.owner.equals(owner) && job.state == BatchJobStatus.State.RUNNING) {
+                activeJobs++;
+                ownerQueued += job.remaining.get();
+            }
+        }
+        String reason = null;
+        if (activeJobs >= maxActiveJobsPerUser) {
+            reason = activeJobs + " of your batches are already running, the limit is " + maxActiveJobsPerUser;
+        } else if (ownerQueued + unique > maxQueuedPromptsPerUser) {
+            reason = ownerQueued + " of your prompts are waiting, the limit is " + maxQueuedPromptsPerUser;
+        } else if (queuedItems.get() + inFlight.get() + unique > maxQueuedPrompts) {
+            reason = "The batch queue is full";
+        }
+        if (reason != null) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException(reason + "; try again when a batch has finished");
+        }
+    }
+
+    public Optional<BatchJob> find(String jobId, String owner) {
+        return Optional.ofNullable(jobs.get(jobId)).filter(job -> job.owner.equals(owner));
+    }
+
+    /**
+     * Results already produced are replayed first, then lines follow as they complete.
+     */
+    public Flux<BatchResult> results(BatchJob job) {
+        return job.results.asFlux();
+    }
+
+    public BatchJobStatus cancel(BatchJob job) {
+        synchronized (job) {
+            if (job.state == BatchJobStatus.State.RUNNING) {
+                job.finish(BatchJobStatus.State.CANCELLED);
+                job.running.dispose();
+                log.info("Cancelled batch {}", job.id);
+            }
+        }
+        return job.status();
+    }
+
+    @Scheduled(fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void evictFinishedJobs() {
+        long cutoff = System.nanoTime() - TimeUnit.MINUTES.toNanos(retentionMinutes);
+        jobs.values().removeIf(job -> job.state != BatchJobStatus.State.RUNNING && job.finishedAt < cutoff);
+    }
+
+    private void dispatch() {
+        try {
+            // The upstream limit is shared: what interactive chat used in the last minute is not for batches
+            int budget = requestsPerMinute - fairShareScheduler.startedLastMinute();
+            if (budget <= 0) {
+                return;
+            }
+            long interval = TimeUnit.MINUTES.toNanos(1) / budget;
+            while (inFlight.get() < concurrency && !work.isEmpty()) {
+                long now = System.nanoTime();
+                if (now < pausedUntilNanos || now < nextPermitNanos) {
+                    return;
+                }
+                // Interactive chat keeps priority: only use capacity it is not asking for
+                if (fairShareScheduler.isSaturated()) {
+                    return;
+                }
+                WorkItem item = work.pollFirst();
+                if (item == null) {
+                    return;
+                }
+                queuedItems.decrementAndGet();
+                if (item.job.state != BatchJobStatus.State.RUNNING) {
+                    continue;
+                }
+                // Evenly spaced permits: an idle period does not turn into a burst
+                nextPermitNanos = Math.max(nextPermitNanos, now) + interval;
+                run(item);
+            }
+        } catch (Exception e) {
+            log.error("Batch dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    private void run(WorkItem item) {
+        inFlight.incrementAndGet();
+        item.attempts++;
+        // Tracked before subscribing so a cancel in between still reaches the call; removed when it ends,
+        // so a long job does not keep every finished call
+        Disposable.Swap call = Disposables.swap();
+        item.job.running.add(call);
+        call.update(knowledgeBaseService.searchContextAsync(item.prompt)
+                .onErrorReturn("")
+                .flatMap(context -> aiService.streamResponse(item.prompt, context).collect(Collectors.joining()))
+                .doFinally(signal -> {
+                    inFlight.decrementAndGet();
+                    item.job.running.remove(call);
+                })
+                .subscribe(answer -> complete(item, answer, null), error -> onFailure(item, error)));
+    }
+
+    private void onFailure(WorkItem item, Throwable error) {
+        if (item.job.state != BatchJobStatus.State.RUNNING) {
+            return;
+        }
+        if (error instanceof WebClientResponseException.TooManyRequests throttled) {
+            // Rate limited upstream: the attempt does not count, wait as long as we are told
+            throttledCounter.increment();
+            item.attempts--;
+            pausedUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds(throttled));
+            requeue(item, true);
+            return;
+        }
+        if (item.attempts < maxAttempts) {
+            requeue(item, false);
+            return;
+        }
+        log.warn("Batch {} prompt failed after {} attempts: {}", item.job.id, item.attempts, error.getMessage());
+        complete(item, null, error.getMessage());
+    }
+
+    private void requeue(WorkItem item, boolean front) {
+        if (front) {
+            work.addFirst(item);
+        } else {
+            work.addLast(item);
+        }
+        queuedItems.incrementAndGet();
+    }
+
+    private void complete(WorkItem item, String answer, String error) {
+        BatchJob job = item.job;
+        synchronized (job) {
+            if (job.state != BatchJobStatus.State.RUNNING) {
+                return;
+            }
+            job.remaining.decrementAndGet();
+            for (String id : item.ids) {
+                int completed = job.completed.incrementAndGet();
+                if (error != null) {
+                    job.failed.incrementAndGet();
+                    failedCounter.increment();
+                } else {
+                    completedCounter.increment();
+                }
+                job.results.tryEmitNext(BatchResult.builder()
+                        .id(id)
+                        .prompt(item.prompt)
+                        .answer(answer)
+                        .error(error)
+                        .completed(completed)
+                        .total(job.total)
+                        .build());
+            }
+            if (job.completed.get() >= job.total) {
+                job.finish(BatchJobStatus.State.COMPLETED);
+                log.info("Batch {} finished: {} prompts, {} failed", job.id, job.total, job.failed.get());
+            }
+        }
+    }
+
+    private static long retryAfterSeconds(WebClientResponseException response) {
+        String header = response.getHeaders().getFirst("Retry-After");
+        try {
+            return header != null ? Math.max(1, (long) Math.ceil(Double.parseDouble(header))) : 10;
+        } catch (NumberFormatException e) {
+            return 10;
+        }
+    }
+
+    public static class BatchJob {
+        private final String id;
+        private final String owner;
+        private final int total;
+        private final int unique;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        // Unique prompts not answered yet, counted against the owner's queue limit
+        private final AtomicInteger remaining;
+        // Emissions are serialized by synchronizing on the job
+        private final Sinks.Many<BatchResult> results = Sinks.many().replay().all();
+        private final Disposable.Composite running = Disposables.composite();
+        private volatile BatchJobStatus.State state = BatchJobStatus.State.RUNNING;
+        private volatile long finishedAt;
+
+        private BatchJob(String id, String owner, int total, int unique) {
+            this.id = id;
+            this.owner = owner;
+            this.total = total;
+            this.unique = unique;
+            this.remaining = new AtomicInteger(unique);
+        }
+
+        private void finish(BatchJobStatus.State finalState) {
+            state = finalState;
+            finishedAt = System.nanoTime();
+            results.tryEmitComplete();
+        }
+
+        public BatchJobStatus status() {
+            return BatchJobStatus.builder()
+                    .jobId(id)
+                    .state(state)
+                    .total(total)
+                    .unique(unique)
+                    .completed(completed.get())
+                    .failed(failed.get())
+                    .createdAt(createdAt)
+                    .build();
+        }
+    }
+
+    private static class WorkItem {
+        private final BatchJob job;
+        private final String prompt;
+        private final List<String> ids;
+        private int attempts; // Only touched by the dispatcher and the item's own callbacks
+
+        private WorkItem(BatchJob job, String prompt, List<String> ids) {
+            this.job = job;
+            this.prompt = prompt;
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.labmentix.aichatbot.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded in-process cache with a time-to-live, in the W-TinyLFU layout:
+ * new entries land in a small LRU window, and an entry leaving the window only
+ * displaces the main region's LRU victim if it has been asked for more often.
+ * Access frequencies come from a count-min sketch of 4-bit counters that is
+ * halved periodically, so one-off lookups cannot flush the hot set.
+ *
+ * Absent values (a loader returning null) are not cached. Meant for small hot
+ * sets on the request path: operations take one lock, which is far cheaper
+ * than the query a hit saves.
+ */
+public final class BoundedCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int mainSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    // Bumped by every invalidation, so a load racing with one is not stored
+    private long invalidations;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(String name, int maximumSize, Duration ttl) {
+        if (maximumSize < 2) {
+            throw new IllegalArgumentException("Cache " + name + " needs room for at least 2 entries");
+        }
+        this.name = name;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.mainSize = maximumSize - windowSize;
+        this.ttlNanos = ttl.toNanos();
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public V getIfPresent(K key) {
+        synchronized (this) {
+            sketch.increment(key);
+            V value = lookup(key);
+            (value != null ? hits : misses).increment();
+            return value;
+        }
+    }
+
+    /** The cached value, or the loader's result (loaded outside the lock and cached unless null). */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long seen;
+        synchronized (this) {
+            sketch.increment(key);
+            V value = lookup(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+            misses.increment();
+            seen = invalidations;
+        }
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            synchronized (this) {
+                if (seen == invalidations) {
+                    store(key, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public synchronized void put(K key, V value) {
+        store(key, value);
+    }
+
+    public synchronized boolean contains(K key) {
+        return lookup(key) != null;
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        window.remove(key);
+        main.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        window.clear();
+        main.clear();
+    }
+
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    /** Registers the usual cache meters (gets by result, evictions, size) tagged with the cache name. */
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tag("cache", name).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tag("cache", name).tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("cache.size", this, BoundedCache::size)
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private V lookup(K key) {
+        Entry<V> entry = window.get(key);
+        if (entry == null) {
+            entry = main.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() <= 0) {
+            window.remove(key);
+            main.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    private void store(K key, V value) {
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+        if (main.containsKey(key)) {
+            main.put(key, entry);
+            return;
+        }
+        window.put(key, entry);
+        if (window.size() <= windowSize) {
+            return;
+        }
+
+        Iterator<Map.Entry<K, Entry<V>>> oldest = window.entrySet().iterator();
+        Map.Entry<K, Entry<V>> candidate = oldest.next();
+        oldest.remove();
+        if (main.size() < mainSize) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        Iterator<Map.Entry<K, Entry<V>>> lru = main.entrySet().iterator();
+        Map.Entry<K, Entry<V>> victim = lru.next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            lru.remove();
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+        evictions.increment();
+    }
+
+    /** Count-min sketch with 4 rows of saturating 4-bit counters (kept in bytes for simplicity). */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize) * 2 - 1);
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, maximumSize);
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int row = 0; row < table.length; row++) {
+                min = Math.min(min, table[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < table.length; row++) {
+                int i = index(hash, row);
+                if (table[row][i] < MAX_COUNT) {
+                    table[row][i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                // Ageing: halve every counter so the sketch follows the current popularity
+                for (byte[] row : table) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.config.WebSocketOutboundFlowControl;
+import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.dto.ClusterEnvelope;
+import com.labmentix.aichatbot.security.StompAuthChannelInterceptor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Single outbound path for chat frames. Delivers to the sessions connected to
+ * this node and, when a {@link ClusterTransport} is configured, relays the frame
+ * so the other nodes deliver it to their own sessions.
+ */
+@Service
+@Slf4j
+public class ChatBroadcaster {
+
+    public static final String USER_UPDATES_QUEUE = "/queue/updates";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired(required = false)
+    private ClusterTransport clusterTransport;
+
+    @Autowired
+    private ConversationReplayBuffer replayBuffer;
+
+    @PostConstruct
+    public void init() {
+        if (clusterTransport != null) {
+            clusterTransport.subscribe(this::onClusterMessage);
+            log.info("Chat fan-out relayed through {} as node {}", clusterTransport.getClass().getSimpleName(), nodeId);
+        }
+    }
+
+    public void toConversation(Long conversationId, ChatMessage message) {
+        replayBuffer.record(conversationId, message);
+        send(ClusterEnvelope.builder()
+                .origin(nodeId)
+                .destination(StompAuthChannelInterceptor.conversationTopic(conversationId))
+                .payload(message)
+                .build());
+    }
+
+    public void toUser(String username, ChatMessage message) {
+        send(ClusterEnvelope.builder()
+                .origin(nodeId)
+                .user(username)
+                .destination(USER_UPDATES_QUEUE)
+                .payload(message)
+                .build());
+    }
+
+    private void send(ClusterEnvelope envelope) {
+        deliverLocally(envelope);
+        if (clusterTransport != null) {
+            clusterTransport.publish(envelope);
+        }
+    }
+
+    private void onClusterMessage(ClusterEnvelope envelope) {
+        if (!nodeId.equals(envelope.getOrigin())) {
+            if (envelope.getUser() == null && envelope.getPayload().getConversationId() != null) {
+                replayBuffer.record(envelope.getPayload().getConversationId(), envelope.getPayload());
+            }
+            deliverLocally(envelope);
+        }
+    }
+
+    private void deliverLocally(ClusterEnvelope envelope) {
+        // The type header lets outbound flow control coalesce or drop non-essential frames
+        Map<String, Object> headers = envelope.getPayload().getType() == null
+                ? Map.of()
+                : Map.of(WebSocketOutboundFlowControl.CHAT_TYPE_HEADER, envelope.getPayload().getType().name());
+        if (envelope.getUser() != null) {
+            messagingTemplate.convertAndSendToUser(envelope.getUser(), envelope.getDestination(), envelope.getPayload(),
+                    headers);
+        } else {
+            messagingTemplate.convertAndSend(envelope.getDestination(), envelope.getPayload(), headers);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.labmentix.aichatbot.service;
 
 import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.dto.ResumeRequest;
 import com.labmentix.aichatbot.model.Conversation;
 import com.labmentix.aichatbot.model.Message;
 import com.labmentix.aichatbot.model.MessageStatus;
@@ -9,12 +10,17 @@ import com.labmentix.aichatbot.model.User;
 import com.labmentix.aichatbot.repository.ConversationRepository;
 import com.labmentix.aichatbot.repository.MessageRepository;
 import com.labmentix.aichatbot.repository.UserRepository;
+import com.labmentix.aichatbot.security.StompUserPrincipal;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
 @Service
 public class ChatService {
@@ -35,60 +41,178 @@ public class ChatService {
         private com.labmentix.aichatbot.repository.KnowledgeRepository knowledgeRepository;
 
         @Autowired
-        private SimpMessagingTemplate messagingTemplate;
+        private ChatBroadcaster chatBroadcaster;
 
-        @Transactional
-        public void processMessage(ChatMessage chatMessage) {
-                // 1. Save User Message
-                User sender = userRepository.findByUsername(chatMessage.getSender())
-                                .orElseThrow(() -> new RuntimeException("User not found"));
+        @Autowired
+        private ConversationMailboxExecutor mailboxExecutor;
+
+        @Autowired
+        private ConversationSequencer conversationSequencer;
+
+        @Autowired
+        private ConversationReplayBuffer replayBuffer;
+
+        @Autowired
+        private GenerationRegistry generationRegistry;
+
+        @Autowired
+        private AdmissionService admissionService;
+
+        @Autowired
+        private ContentVersions contentVersions;
+
+        @Autowired
+        private MessageWriteBehind messageWriteBehind;
+
+        @Autowired
+        private EngagementSketchService engagementSketches;
+
+        @Autowired
+        private LiveAnalyticsService liveAnalytics;
+
+        @Autowired
+        private ConversationOwnerCache conversationOwners;
 
-                Conversation conversation;
-                if (chatMessage.getConversationId() != null) {
-                        conversation = conversationRepository.findById(chatMessage.getConversationId())
-                                        .orElseThrow(() -> new RuntimeException("Conversation not found"));
-                } else {
-                        // Fallback or create new
-                        conversation = conversationRepository.findByUserOrderByStartedAtDesc(sender).stream()
-                                        .findFirst()
+        // Serializes picking the default conversation per user, so two first messages create one conversation
+        private final Object[] selectionLocks = Stream.generate(Object::new).limit(64).toArray();
+
+        /**
+         * Queues the message on its conversation's mailbox so that messages of one
+         * conversation (including their AI replies and title updates) are handled
+         * strictly in arrival order, while other conversations proceed in parallel.
+         * The sender is the session's principal resolved on CONNECT.
+         */
+        public void processMessage(ChatMessage chatMessage, StompUserPrincipal principal, String sessionId) {
+                // One id per chat message, carried through the mailbox and AI callbacks into every log line
+                MDC.put(Correlation.MDC_KEY, Correlation.newId());
+                try {
+                        boolean selected = false;
+                        if (chatMessage.getConversationId() == null) {
+                                // Resolved before queuing, so the message shares the mailbox of the conversation's other messages
+                                try {
+                                        chatMessage.setConversationId(selectConversation(principal).getId());
+                                } catch (RuntimeException e) {
+                                        sendError(chatMessage, principal, e);
+                                        return;
+                                }
+                                selected = true;
+                        }
+                        admit(chatMessage, principal, sessionId, selected);
+                } finally {
+                        MDC.remove(Correlation.MDC_KEY);
+                }
+        }
+
+        private void admit(ChatMessage chatMessage, StompUserPrincipal principal, String sessionId, boolean selected) {
+                // Admission first: over-budget users are told when to retry instead of being queued
+                AdmissionService.Decision decision = admissionService.admit(principal, () -> mailboxExecutor
+                                .submit(chatMessage.getConversationId(),
+                                                Correlation.supplier(() -> handleMessage(chatMessage, principal, sessionId, selected)))
+                                .exceptionally(ex -> {
+                                        sendError(chatMessage, principal, ex);
+                                        return null;
+                                }));
+
+                if (!decision.admitted()) {
+                        chatBroadcaster.toUser(principal.username(), ChatMessage.builder()
+                                        .sender("SYSTEM")
+                                        .type(ChatMessage.MessageType.RATE_LIMITED)
+                                        .content("You are sending messages too quickly. Please retry in "
+                                                        + Math.max(1, decision.retryAfterMs() / 1000) + "s.")
+                                        .conversationId(chatMessage.getConversationId())
+                                        .retryAfterMs(decision.retryAfterMs())
+                                        .build());
+                }
+        }
+
+        /**
+         * The conversation a message without one goes to: the user's latest, or a new one.
+         */
+        private Conversation selectConversation(StompUserPrincipal principal) {
+                synchronized (selectionLocks[Math.floorMod(principal.userId().hashCode(), selectionLocks.length)]) {
+                        User sender = userRepository.getReferenceById(principal.userId());
+                        return conversationRepository.findFirstByUserAndDeletedAtIsNullOrderByStartedAtDesc(sender)
                                         .orElseGet(() -> conversationRepository.save(Conversation.builder()
                                                         .user(sender)
                                                         .startedAt(LocalDateTime.now())
                                                         .title("New Chat")
                                                         .build()));
                 }
+        }
+
+        /**
+         * Tells the sender that the message was not handled. Failures of the AI reply itself are
+         * reported on the conversation topic by {@link #handleMessage}; this covers everything before it.
+         */
+        private void sendError(ChatMessage chatMessage, StompUserPrincipal principal, Throwable ex) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                chatBroadcaster.toUser(principal.username(), ChatMessage.builder()
+                                .sender("AI Assistant")
+                                .type(ChatMessage.MessageType.ERROR)
+                                .content(cause instanceof RejectedExecutionException
+                                                ? "Too many pending messages, please wait for the current reply."
+                                                : "Sorry, your message could not be processed.")
+                                .conversationId(chatMessage.getConversationId())
+                                .build());
+        }
+
+        private CompletableFuture<Void> handleMessage(ChatMessage chatMessage, StompUserPrincipal principal,
+                        String sessionId, boolean selected) {
+                // 1. Save User Message (the user was resolved on CONNECT, a reference is enough here)
+                User sender = userRepository.getReferenceById(principal.userId());
+
+                // Owner and title are cached, the message itself only needs a reference. Only the owner may
+                // post into a conversation; its topic is owner-only as well.
+                ConversationOwnerCache.ConversationRef ref = conversationOwners.find(chatMessage.getConversationId())
+                                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+                if (!ref.ownerId().equals(principal.userId())) {
+                        throw new RuntimeException("Conversation does not belong to " + principal.username());
+                }
+                Conversation conversation = conversationRepository.getReferenceById(ref.id());
+                String title = ref.title();
 
                 Message userMsg = Message.builder()
                                 .content(chatMessage.getContent())
                                 .sender(sender)
                                 .conversation(conversation)
                                 .timestamp(LocalDateTime.now())
+                                .seq(conversationSequencer.next(conversation.getId()))
                                 .type(MessageType.USER)
                                 .status(MessageStatus.SENT)
                                 .attachmentUrl(chatMessage.getAttachmentUrl())
                                 .attachmentType(chatMessage.getAttachmentType())
                                 .build();
 
-                messageRepository.save(userMsg);
+                messageWriteBehind.enqueue(userMsg, principal.username());
+                contentVersions.conversationChanged(conversation.getId(), principal.username());
+
+                // Echo the accepted message to the conversation's subscribers. When the server picked
+                // the conversation, tell the sender which one so the client can subscribe to it.
+                if (selected) {
+                        chatBroadcaster.toUser(principal.username(), conversationUpdate(conversation.getId(), "Conversation Selected"));
+                }
+                chatMessage.setSeq(userMsg.getSeq());
+                chatBroadcaster.toConversation(conversation.getId(), chatMessage);
 
                 // Update conversation title intelligently if it's "New Chat" or Untitled
-                if (conversation.getTitle() == null ||
-                                conversation.getTitle().trim().equalsIgnoreCase("New Chat") ||
-                                conversation.getTitle().trim().isEmpty()) {
-
-                        aiService.generateTitle(chatMessage.getContent()).thenAccept(aiTitle -> {
-                                conversation.setTitle(aiTitle);
-                                conversationRepository.save(conversation);
-
-                                // Notify frontend to refresh conversation list
-                                ChatMessage updateMsg = ChatMessage.builder()
-                                                .sender("SYSTEM")
-                                                .type(ChatMessage.MessageType.CONVERSATION_UPDATE)
-                                                .content("Title Updated")
-                                                .conversationId(conversation.getId())
-                                                .build();
-                                messagingTemplate.convertAndSend("/topic/public", updateMsg);
-                        });
+                CompletableFuture<Void> titleUpdate = CompletableFuture.completedFuture(null);
+                if (isDefaultTitle(title)) {
+                        titleUpdate = aiService.generateTitle(chatMessage.getContent()).thenAccept(Correlation.consumer(aiTitle -> {
+                                // Re-read: the cached title may predate a rename, which must not be overwritten
+                                Conversation current = conversationRepository.findByIdAndDeletedAtIsNull(conversation.getId())
+                                                .filter(c -> isDefaultTitle(c.getTitle()))
+                                                .orElse(null);
+                                if (current == null) {
+                                        return;
+                                }
+                                current.setTitle(aiTitle);
+                                conversationRepository.save(current);
+                                conversationOwners.invalidate(current.getId());
+                                contentVersions.conversationChanged(conversation.getId(), principal.username());
+
+                                // Notify the owner's sessions to refresh the conversation list
+                                chatBroadcaster.toUser(principal.username(), conversationUpdate(conversation.getId(), "Title Updated"));
+                        })).exceptionally(ex -> null);
                 }
 
                 // 2. Notify Frontend: AI is Typing
@@ -98,7 +222,7 @@ public class ChatService {
                                 .conversationId(conversation.getId())
                                 .content("Thinking...")
                                 .build();
-                messagingTemplate.convertAndSend("/topic/public", typingMsg);
+                chatBroadcaster.toConversation(conversation.getId(), typingMsg);
 
                 // 3. Trigger AI Response
                 // Check if there is extracted text for this attachment
@@ -109,40 +233,141 @@ public class ChatService {
                                         .orElse(null);
                 }
 
-                aiService.generateResponse(chatMessage.getContent(), chatMessage.getAttachmentUrl(),
-                                chatMessage.getAttachmentType(), extractedText)
-                                .thenAccept(responseContent -> {
-                                        // 4. Save AI Message
-                                        Message aiMsg = Message.builder()
-                                                        .content(responseContent)
-                                                        .sender(null) // System/AI
-                                                        .conversation(conversation)
-                                                        .timestamp(LocalDateTime.now())
-                                                        .type(MessageType.AI)
-                                                        .status(MessageStatus.RECEIVED)
-                                                        .build();
-
-                                        messageRepository.save(aiMsg);
-
-                                        // 5. Broadcast AI Message
-                                        ChatMessage responseDto = ChatMessage.builder()
-                                                        .content(responseContent)
-                                                        .sender("AI Assistant")
-                                                        .type(ChatMessage.MessageType.CHAT)
-                                                        .conversationId(conversation.getId())
-                                                        .build();
-
-                                        messagingTemplate.convertAndSend("/topic/public", responseDto);
-                                })
-                                .exceptionally(ex -> {
+                GenerationHandle generation = generationRegistry.start(conversation.getId(), principal.userId(), sessionId);
+                CompletableFuture<Void> reply = aiService.generateResponse(chatMessage.getContent(), chatMessage.getAttachmentUrl(),
+                                chatMessage.getAttachmentType(), extractedText, generation)
+                                .thenAccept(Correlation.consumer(responseContent -> {
+                                        engagementSketches.recordResponse(generation.elapsedMillis(), responseContent.length());
+                                        liveAnalytics.responseCompleted(generation.elapsedMillis());
+                                        // 4. Save and broadcast AI Message
+                                        persistAndBroadcastAiMessage(conversation, principal.username(), responseContent,
+                                                        MessageStatus.RECEIVED, ChatMessage.MessageType.CHAT);
+                                }))
+                                .exceptionally(Correlation.function(ex -> {
+                                        if (generation.isCancelled()) {
+                                                // The reply arrives whole, so a stopped one has nothing to keep; release the typing state
+                                                chatBroadcaster.toConversation(conversation.getId(), ChatMessage.builder()
+                                                                .sender("AI Assistant")
+                                                                .type(ChatMessage.MessageType.CANCELLED)
+                                                                .content("Generation stopped")
+                                                                .conversationId(conversation.getId())
+                                                                .build());
+                                                return null;
+                                        }
+                                        liveAnalytics.responseFailed();
                                         ChatMessage errorMsg = ChatMessage.builder()
                                                         .sender("AI Assistant")
                                                         .type(ChatMessage.MessageType.ERROR)
                                                         .content("Sorry, I encountered an error.")
                                                         .conversationId(conversation.getId())
                                                         .build();
-                                        messagingTemplate.convertAndSend("/topic/public", errorMsg);
+                                        chatBroadcaster.toConversation(conversation.getId(), errorMsg);
                                         return null;
-                                });
+                                }))
+                                .whenComplete((v, ex) -> generationRegistry.finish(generation));
+
+                // The mailbox moves on to the next message only after both have been persisted
+                return CompletableFuture.allOf(titleUpdate, reply);
+        }
+
+        /**
+         * Stops the conversation's in-flight AI reply, if the caller owns it.
+         */
+        public void cancelGeneration(Long conversationId, StompUserPrincipal principal) {
+                if (conversationId != null) {
+                        generationRegistry.cancel(conversationId, principal.userId());
+                }
+        }
+
+        private void persistAndBroadcastAiMessage(Conversation conversation, String owner, String content,
+                        MessageStatus status, ChatMessage.MessageType frameType) {
+                Message aiMsg = Message.builder()
+                                .content(content)
+                                .sender(null) // System/AI
+                                .conversation(conversation)
+                                .timestamp(LocalDateTime.now())
+                                .seq(conversationSequencer.next(conversation.getId()))
+                                .type(MessageType.AI)
+                                .status(status)
+                                .build();
+
+                messageWriteBehind.enqueue(aiMsg, owner);
+                contentVersions.conversationChanged(conversation.getId(), owner);
+
+                ChatMessage responseDto = ChatMessage.builder()
+                                .content(content)
+                                .sender("AI Assistant")
+                                .type(frameType)
+                                .status(status)
+                                .conversationId(conversation.getId())
+                                .seq(aiMsg.getSeq())
+                                .build();
+
+                chatBroadcaster.toConversation(conversation.getId(), responseDto);
+        }
+
+        /**
+         * Frames of the conversation after {@code lastSeq}: served from the in-memory replay
+         * ring when it still covers the gap, otherwise from the database (bounded).
+         */
+        public List<ChatMessage> resume(ResumeRequest request, StompUserPrincipal principal) {
+                if (request.getConversationId() == null) {
+                        return List.of();
+                }
+                long lastSeq = request.getLastSeq() != null ? request.getLastSeq() : 0L;
+
+                ConversationOwnerCache.ConversationRef conversation = conversationOwners.find(request.getConversationId())
+                                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+                if (!conversation.ownerId().equals(principal.userId())) {
+                        throw new RuntimeException("Conversation does not belong to " + principal.username());
+                }
+
+                return replayBuffer.since(conversation.id(), lastSeq).orElseGet(() -> {
+                        // Messages still buffered for the database are not visible to the query yet
+                        List<ChatMessage> missed = new java.util.ArrayList<>(messageRepository
+                                        .findTop500ByConversationIdAndSeqGreaterThanAndTimestampGreaterThanEqualOrderBySeqAsc(
+                                                        conversation.id(), lastSeq,
+                                                        MessageRepository.partitionFloor(conversation.startedAt()))
+                                        .stream()
+                                        .map(m -> ChatMessage.builder()
+                                                        .content(m.getContent())
+                                                        .sender(m.getSender() != null ? m.getSender().getUsername() : "AI Assistant")
+                                                        .type(ChatMessage.MessageType.CHAT)
+                                                        .status(m.getStatus())
+                                                        .conversationId(conversation.id())
+                                                        .attachmentUrl(m.getAttachmentUrl())
+                                                        .attachmentType(m.getAttachmentType())
+                                                        .seq(m.getSeq())
+                                                        .build())
+                                        .toList());
+                        long persistedSeq = missed.isEmpty() ? lastSeq : missed.get(missed.size() - 1).getSeq();
+                        messageWriteBehind.pending(conversation.id()).stream()
+                                        .filter(m -> m.seq() != null && m.seq() > persistedSeq)
+                                        .map(m -> ChatMessage.builder()
+                                                        .content(m.content())
+                                                        .sender(m.senderName() != null ? m.senderName() : "AI Assistant")
+                                                        .type(ChatMessage.MessageType.CHAT)
+                                                        .status(m.status())
+                                                        .conversationId(conversation.id())
+                                                        .attachmentUrl(m.attachmentUrl())
+                                                        .attachmentType(m.attachmentType())
+                                                        .seq(m.seq())
+                                                        .build())
+                                        .forEach(missed::add);
+                        return missed;
+                });
+        }
+
+        private static boolean isDefaultTitle(String title) {
+                return title == null || title.trim().isEmpty() || title.trim().equalsIgnoreCase("New Chat");
+        }
+
+        private ChatMessage conversationUpdate(Long conversationId, String content) {
+                return ChatMessage.builder()
+                                .sender("SYSTEM")
+                                .type(ChatMessage.MessageType.CONVERSATION_UPDATE)
+                                .content(content)
+                                .conversationId(conversationId)
+                                .build();
         }
 }
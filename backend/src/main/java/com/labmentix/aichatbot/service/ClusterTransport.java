@@ -0,0 +1,16 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.ClusterEnvelope;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries broker messages between application nodes so that a reply produced
+ * on one node reaches clients connected to another. Implementations deliver
+ * every published envelope to all subscribers, including the publishing node.
+ */
+public interface ClusterTransport {
+    void publish(ClusterEnvelope envelope);
+
+    void subscribe(Consumer<ClusterEnvelope> listener);
+}
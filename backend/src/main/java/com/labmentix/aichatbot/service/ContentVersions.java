@@ -0,0 +1,108 @@
+package com.labmentix.aichatbot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters behind the ETags of the conversation list (per user) and of
+ * a conversation's messages (per conversation).
+ *
+ * Writers bump after their change is persisted; readers take the ETag before
+ * reading, so a response can only ever be tagged older than its content, never
+ * newer. Versions come from one node-wide clock prefixed with a per-process
+ * epoch, so an evicted or restarted entry never repeats an old ETag. The maps
+ * are node-local: with several nodes and no sticky sessions, set
+ * {@code chat.http.etag.enabled=false}.
+ */
+@Component
+public class ContentVersions {
+
+    private static final int MAX_TRACKED = 50_000;
+
+    @Value("${chat.http.etag.enabled:true}")
+    private boolean enabled;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Map<String, Long> userVersions = lruMap();
+    private final Map<Long, ConversationVersion> conversationVersions = lruMap();
+
+    private record ConversationVersion(String owner, long version) {
+    }
+
+    /** A message was added to, or the title of, a conversation changed. */
+    public void conversationChanged(Long conversationId, String owner) {
+        long version = clock.incrementAndGet();
+        conversationVersions.put(conversationId, new ConversationVersion(owner, version));
+        // Counts, previews and ordering of the sidebar change with it
+        userVersions.put(owner, version);
+    }
+
+    public void conversationRemoved(Long conversationId, String owner) {
+        conversationVersions.remove(conversationId);
+        userVersions.put(owner, clock.incrementAndGet());
+    }
+
+    /** ETag of the user's conversation list, assigning a version on first use. */
+    public String conversationListEtag(String username) {
+        if (!enabled) {
+            return null;
+        }
+        return etag("u", userVersions.computeIfAbsent(username, k -> clock.incrementAndGet()));
+    }
+
+    /**
+     * ETag of a conversation already known to belong to {@code owner}, or null when this
+     * node has no version for it (the caller then has to check ownership in the database).
+     */
+    public String knownConversationEtag(Long conversationId, String owner) {
+        if (!enabled) {
+            return null;
+        }
+        ConversationVersion version = conversationVersions.get(conversationId);
+        return version != null && version.owner().equals(owner) ? etag("c", version.version()) : null;
+    }
+
+    /** ETag of a conversation whose ownership the caller has just verified. */
+    public String conversationEtag(Long conversationId, String owner) {
+        if (!enabled) {
+            return null;
+        }
+        ConversationVersion version = conversationVersions.computeIfAbsent(conversationId,
+                id -> new ConversationVersion(owner, clock.incrementAndGet()));
+        return etag("c", version.version());
+    }
+
+    /** True if {@code If-None-Match} lists the ETag (or is a wildcard). */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String etag(String kind, long version) {
+        return "\"" + epoch + "-" + kind + version + "\"";
+    }
+
+    private static <K, V> Map<K, V> lruMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_TRACKED;
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.repository.ConversationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes conversations in two steps. The request only sets a tombstone
+ * ({@code deleted_at}), after which the conversation is invisible to every read
+ * path. A single background worker then removes its messages in bounded
+ * batches, each a short statement of its own, so a large history never holds a
+ * pooled connection for long, and finally the conversation row.
+ *
+ * Tombstones left behind by a restart are picked up again by a periodic sweep.
+ */
+@Service
+@Slf4j
+public class ConversationDeletionService {
+
+    private static final String DELETE_BATCH_SQL = "DELETE FROM messages WHERE id IN "
+            + "(SELECT id FROM messages WHERE conversation_id = ? LIMIT ?)";
+
+    @Value("${chat.deletion.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${chat.deletion.pause-ms:50}")
+    private long pauseMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationSequencer conversationSequencer;
+
+    @Autowired
+    private ConversationStatsService conversationStats;
+
+    @Autowired
+    private ConversationOwnerCache conversationOwners;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicLong reclaiming = new AtomicLong();
+    private ExecutorService reaper;
+
+    private Counter messagesCounter;
+    private Counter conversationsCounter;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        messagesCounter = Counter.builder("chat.deletion.messages")
+                .description("Messages of deleted conversations reclaimed")
+                .register(meterRegistry);
+        conversationsCounter = Counter.builder("chat.deletion.conversations")
+                .description("Deleted conversations fully reclaimed")
+                .register(meterRegistry);
+        batchTimer = Timer.builder("chat.deletion.batch").register(meterRegistry);
+        Gauge.builder("chat.deletion.queued", queued, Set::size)
+                .description("Tombstoned conversations waiting to be reclaimed")
+                .register(meterRegistry);
+        Gauge.builder("chat.deletion.current.reclaimed", reclaiming, AtomicLong::get)
+                .description("Messages reclaimed so far of the conversation being processed")
+                .register(meterRegistry);
+
+        reaper = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "conversation-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished conversations keep their tombstone and are resumed by the next sweep
+        reaper.shutdownNow();
+    }
+
+    /** Tombstones the conversation and schedules its rows for removal. */
+    public void delete(Long conversationId) {
+        jdbcTemplate.update("UPDATE conversations SET deleted_at = ? WHERE id = ? AND deleted_at IS NULL",
+                Timestamp.valueOf(LocalDateTime.now()), conversationId);
+        conversationSequencer.forget(conversationId);
+        conversationStats.forget(conversationId);
+        conversationOwners.invalidate(conversationId);
+        schedule(conversationId);
+    }
+
+    @Scheduled(initialDelay = 30, fixedDelayString = "${chat.deletion.sweep-interval-seconds:300}", timeUnit = TimeUnit.SECONDS)
+    public void sweep() {
+        conversationRepository.findTombstonedIds().forEach(this::schedule);
+    }
+
+    private void schedule(Long conversationId) {
+        if (queued.add(conversationId)) {
+            reaper.execute(() -> {
+                try {
+                    reclaim(conversationId);
+                } catch (Exception e) {
+                    log.error("Reclaiming conversation {} failed, will retry on the next sweep: {}",
+                            conversationId, e.getMessage());
+                } finally {
+                    queued.remove(conversationId);
+                    reclaiming.set(0);
+                }
+            });
+        }
+    }
+
+    private void reclaim(Long conversationId) throws InterruptedException {
+        long total = 0;
+        TransactionTemplate batchTransaction = new TransactionTemplate(transactionManager);
+        while (true) {
+            // One short transaction per batch, so the connection goes back to the pool in between
+            Integer deleted = batchTimer.record(() -> batchTransaction.execute(status -> {
+                int rows = jdbcTemplate.update(DELETE_BATCH_SQL, conversationId, batchSize);
+                conversationStats.removed(conversationId, rows);
+                return rows;
+            }));
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            total += deleted;
+            messagesCounter.increment(deleted);
+            reclaiming.set(total);
+            if (pauseMs > 0) {
+                Thread.sleep(pauseMs);
+            }
+        }
+        messageArchive.forget(conversationId);
+        jdbcTemplate.update("DELETE FROM conversations WHERE id = ? AND deleted_at IS NOT NULL", conversationId);
+        conversationsCounter.increment();
+        log.info("Reclaimed conversation {} ({} messages)", conversationId, total);
+    }
+}
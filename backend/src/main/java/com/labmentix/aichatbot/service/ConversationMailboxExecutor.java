@@ -0,0 +1,177 @@
+package com.labmentix.aichatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Actor-style executor: every key (usually a conversation id) owns a bounded
+ * mailbox whose tasks run one at a time in arrival order, while different keys
+ * run in parallel on a shared worker pool.
+ *
+ * A task returns a future and the next task of the same key only starts once
+ * that future completes, so async work (AI replies, title updates) stays
+ * ordered too.
+ */
+@Component
+@Slf4j
+public class ConversationMailboxExecutor {
+
+    @Value("${chat.mailbox.capacity:32}")
+    private int capacity;
+
+    @Value("${chat.mailbox.threads:0}")
+    private int threads;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private ExecutorService workers;
+    private Counter rejectedCounter;
+    private Counter processedCounter;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "chat-mailbox-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Gauge.builder("chat.mailbox.queued", queued, AtomicInteger::get)
+                .description("Tasks waiting in conversation mailboxes")
+                .register(meterRegistry);
+        Gauge.builder("chat.mailbox.active", mailboxes, ConcurrentHashMap::size)
+                .description("Conversations with pending or running work")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.mailbox.rejected")
+                .description("Tasks rejected because the mailbox was full")
+                .register(meterRegistry);
+        this.processedCounter = Counter.builder("chat.mailbox.processed")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Enqueues a task for the given key. The returned future completes when the
+     * task's own future does, or exceptionally with
+     * {@link RejectedExecutionException} if the mailbox is full.
+     */
+    public CompletableFuture<Void> submit(Object key, Supplier<CompletableFuture<?>> task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean[] accepted = { false };
+        boolean[] schedule = { false };
+
+        mailboxes.compute(key, (k, box) -> {
+            if (box == null) {
+                box = new Mailbox();
+            }
+            if (box.queue.size() >= capacity) {
+                return box;
+            }
+            box.queue.add(new Envelope(task, done));
+            accepted[0] = true;
+            if (!box.running) {
+                box.running = true;
+                schedule[0] = true;
+            }
+            return box;
+        });
+
+        if (!accepted[0]) {
+            rejectedCounter.increment();
+            done.completeExceptionally(new RejectedExecutionException("Mailbox full for " + key));
+            return done;
+        }
+
+        queued.incrementAndGet();
+        if (schedule[0]) {
+            workers.execute(() -> runNext(key));
+        }
+        return done;
+    }
+
+    public int depth(Object key) {
+        Mailbox box = mailboxes.get(key);
+        return box == null ? 0 : box.queue.size();
+    }
+
+    private void runNext(Object key) {
+        Envelope[] next = { null };
+        mailboxes.compute(key, (k, box) -> {
+            if (box == null) {
+                return null;
+            }
+            next[0] = box.queue.poll();
+            if (next[0] == null) {
+                // Idle mailboxes are dropped so the map only holds busy conversations
+                return null;
+            }
+            return box;
+        });
+
+        Envelope envelope = next[0];
+        if (envelope == null) {
+            return;
+        }
+        queued.decrementAndGet();
+
+        CompletableFuture<?> result;
+        try {
+            result = envelope.task.get();
+            if (result == null) {
+                result = CompletableFuture.completedFuture(null);
+            }
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((value, ex) -> {
+            processedCounter.increment();
+            if (ex != null) {
+                log.warn("Mailbox task for {} failed: {}", key, ex.getMessage());
+                envelope.done.completeExceptionally(ex);
+            } else {
+                envelope.done.complete(null);
+            }
+            try {
+                workers.execute(() -> runNext(key));
+            } catch (RejectedExecutionException e) {
+                log.warn("Mailbox worker pool shut down, dropping remaining work for {}", key);
+            }
+        });
+    }
+
+    private static class Mailbox {
+        private final Queue<Envelope> queue = new ArrayDeque<>();
+        private boolean running;
+    }
+
+    private record Envelope(Supplier<CompletableFuture<?>> task, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.repository.ConversationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Owner, title and start of live conversations, so the per-message ownership checks
+ * (chat messages, resumes, topic subscriptions, history) do not load the
+ * conversation each time.
+ *
+ * Deleted conversations are never cached. Renames and deletes invalidate their
+ * entry here; other nodes see them once {@code chat.cache.conversations.ttl-seconds}
+ * has passed, and code that writes the title re-reads the row first.
+ */
+@Service
+public class ConversationOwnerCache {
+
+    public record ConversationRef(Long id, Long ownerId, String ownerUsername, String title,
+            java.time.LocalDateTime startedAt) {
+    }
+
+    @Value("${chat.cache.conversations.max-size:50000}")
+    private int maxSize;
+
+    @Value("${chat.cache.conversations.ttl-seconds:120}")
+    private long ttlSeconds;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BoundedCache<Long, ConversationRef> conversations;
+
+    @PostConstruct
+    void init() {
+        conversations = new BoundedCache<>("conversations", maxSize, Duration.ofSeconds(ttlSeconds));
+        conversations.bindTo(meterRegistry);
+    }
+
+    public Optional<ConversationRef> find(Long conversationId) {
+        if (conversationId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(conversations.get(conversationId, id -> conversationRepository
+                .findByIdAndDeletedAtIsNull(id)
+                .filter(c -> c.getUser() != null)
+                .map(c -> new ConversationRef(c.getId(), c.getUser().getId(), c.getUser().getUsername(), c.getTitle(),
+                        c.getStartedAt()))
+                .orElse(null)));
+    }
+
+    public boolean isOwner(Long conversationId, Long userId) {
+        return find(conversationId).map(c -> c.ownerId().equals(userId)).orElse(false);
+    }
+
+    public boolean isOwner(Long conversationId, String username) {
+        return find(conversationId).map(c -> c.ownerUsername().equals(username)).orElse(false);
+    }
+
+    public void invalidate(Long conversationId) {
+        conversations.invalidate(conversationId);
+    }
+}
@@ -0,0 +1,85 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the last few sequenced frames of recently active conversations so a
+ * reconnecting client can be sent just the frames it missed.
+ */
+@Component
+public class ConversationReplayBuffer {
+
+    private final int framesPerConversation;
+    private final Map<Long, Deque<ChatMessage>> rings;
+
+    public ConversationReplayBuffer(
+            @Value("${chat.replay.frames-per-conversation:64}") int framesPerConversation,
+            @Value("${chat.replay.max-conversations:5000}") int maxConversations) {
+        this.framesPerConversation = framesPerConversation;
+        this.rings = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Deque<ChatMessage>> eldest) {
+                return size() > maxConversations;
+            }
+        });
+    }
+
+    public void record(Long conversationId, ChatMessage frame) {
+        if (frame.getSeq() == null) {
+            return;
+        }
+        Deque<ChatMessage> ring = rings.computeIfAbsent(conversationId, k -> new ArrayDeque<>());
+        synchronized (ring) {
+            if (!ring.isEmpty() && ring.peekLast().getSeq() >= frame.getSeq()) {
+                // Duplicate, or out of order after a cross-node relay: a ring with gaps would
+                // hand out incomplete deltas, so let resumes fall back to the database instead
+                if (!ring.peekLast().getSeq().equals(frame.getSeq())) {
+                    ring.clear();
+                }
+                return;
+            }
+            ring.addLast(frame);
+            while (ring.size() > framesPerConversation) {
+                ring.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Frames after {@code lastSeq}, or empty if the ring no longer reaches back
+     * that far and the caller has to fall back to the database.
+     */
+    public Optional<List<ChatMessage>> since(Long conversationId, long lastSeq) {
+        Deque<ChatMessage> ring = rings.get(conversationId);
+        if (ring == null) {
+            return Optional.empty();
+        }
+        synchronized (ring) {
+            if (ring.isEmpty() || ring.peekFirst().getSeq() > lastSeq + 1) {
+                return Optional.empty();
+            }
+            List<ChatMessage> missed = new ArrayList<>();
+            for (ChatMessage frame : ring) {
+                if (frame.getSeq() > lastSeq) {
+                    missed.add(frame);
+                }
+            }
+            return Optional.of(missed);
+        }
+    }
+
+    public void forget(Long conversationId) {
+        rings.remove(conversationId);
+    }
+}
@@ -0,0 +1,63 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hands out per-conversation message sequence numbers.
+ *
+ * Callers run inside the conversation's mailbox, so numbers of one conversation
+ * are requested and persisted one at a time. The last number is cached for
+ * recently active conversations and re-read from the messages table otherwise,
+ * including messages still buffered by {@link MessageWriteBehind} and archived
+ * ones.
+ */
+@Component
+public class ConversationSequencer {
+
+    private static final int MAX_CACHED_CONVERSATIONS = 10_000;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageWriteBehind messageWriteBehind;
+
+    @Autowired
+    private ConversationOwnerCache conversationOwners;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    private final Map<Long, Long> lastSeq = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                    return size() > MAX_CACHED_CONVERSATIONS;
+                }
+            });
+
+    public long next(Long conversationId) {
+        Long current = lastSeq.get(conversationId);
+        if (current == null) {
+            LocalDateTime since = MessageRepository.partitionFloor(conversationOwners.find(conversationId)
+                    .map(ConversationOwnerCache.ConversationRef::startedAt)
+                    .orElse(null));
+            current = Math.max(messageRepository.findMaxSeq(conversationId, since), messageWriteBehind.maxPendingSeq(conversationId));
+            current = Math.max(current, messageArchive.maxSeq(conversationId));
+        }
+        long next = current + 1;
+        lastSeq.put(conversationId, next);
+        return next;
+    }
+
+    public void forget(Long conversationId) {
+        lastSeq.remove(conversationId);
+    }
+}
@@ -0,0 +1,159 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.AnalyticsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@code conversations.message_count} and {@code last_message_at} in step
+ * with the messages table, and the busiest conversations in a bounded min-heap.
+ *
+ * The counters are updated in the same transaction that inserts or deletes the
+ * messages. The heap is fed with the new counts of conversations touched by each
+ * flush and rebuilt from the indexed column periodically, so reading the top
+ * conversations never touches the database.
+ */
+@Service
+@Slf4j
+public class ConversationStatsService {
+
+    private static final Comparator<ConversationCount> BY_COUNT = Comparator
+            .comparingLong(ConversationCount::messageCount)
+            .thenComparing(ConversationCount::id);
+
+    @Value("${chat.top-conversations.size:20}")
+    private int capacity;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private record ConversationCount(Long id, String title, long messageCount) {
+    }
+
+    // Min-heap of the K largest counts; its root is the entry to evict next
+    private final PriorityQueue<ConversationCount> heap = new PriorityQueue<>(BY_COUNT);
+    private final Map<Long, ConversationCount> members = new HashMap<>();
+    private volatile List<ConversationCount> ranking = List.of();
+
+    /** Adds the messages to their conversations' counters; meant to run in the inserting transaction. */
+    public void record(Collection<MessageWriteBehind.PendingMessage> messages) {
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        Map<Long, LocalDateTime> latest = new HashMap<>();
+        for (MessageWriteBehind.PendingMessage m : messages) {
+            counts.merge(m.conversationId(), 1L, Long::sum);
+            if (m.timestamp() != null) {
+                latest.merge(m.conversationId(), m.timestamp(), (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE conversations SET message_count = message_count + ?, "
+                + "last_message_at = CASE WHEN last_message_at IS NULL OR last_message_at < ? THEN ? "
+                + "ELSE last_message_at END WHERE id = ?",
+                counts.entrySet().stream().map(e -> {
+                    LocalDateTime at = latest.get(e.getKey());
+                    Timestamp ts = at != null ? Timestamp.valueOf(at) : null;
+                    return new Object[] { e.getValue(), ts, ts, e.getKey() };
+                }).toList());
+    }
+
+    /** Takes deleted messages off the counter; meant to run in the deleting transaction. */
+    public void removed(Long conversationId, int count) {
+        jdbcTemplate.update("UPDATE conversations SET message_count = GREATEST(message_count - ?, 0) WHERE id = ?",
+                count, conversationId);
+    }
+
+    /** Offers the current counts of conversations that just received messages to the heap. */
+    public void touched(Collection<Long> conversationIds) {
+        if (conversationIds.isEmpty()) {
+            return;
+        }
+        List<ConversationCount> current = namedJdbcTemplate.query(
+                "SELECT id, title, message_count FROM conversations WHERE id IN (:ids) AND deleted_at IS NULL",
+                new MapSqlParameterSource("ids", conversationIds),
+                (rs, i) -> new ConversationCount(rs.getLong(1), rs.getString(2), rs.getLong(3)));
+        synchronized (heap) {
+            current.forEach(this::offer);
+            publish();
+        }
+    }
+
+    public void forget(Long conversationId) {
+        synchronized (heap) {
+            ConversationCount member = members.remove(conversationId);
+            if (member != null) {
+                heap.remove(member);
+                publish();
+            }
+        }
+    }
+
+    /** The busiest conversations, at most {@code chat.top-conversations.size}. */
+    public List<AnalyticsDTO.ConversationStat> top(int limit) {
+        return ranking.stream()
+                .limit(limit)
+                .map(c -> AnalyticsDTO.ConversationStat.builder()
+                        .title(c.title())
+                        .messageCount(c.messageCount())
+                        .build())
+                .toList();
+    }
+
+    /** Rebuilds the heap from the index, also picking up renames and other nodes' writes. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 60, fixedDelayString = "${chat.top-conversations.refresh-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void refresh() {
+        try {
+            List<ConversationCount> top = jdbcTemplate.query(
+                    "SELECT id, title, message_count FROM conversations WHERE deleted_at IS NULL "
+                            + "ORDER BY message_count DESC LIMIT ?",
+                    (rs, i) -> new ConversationCount(rs.getLong(1), rs.getString(2), rs.getLong(3)), capacity);
+            synchronized (heap) {
+                heap.clear();
+                members.clear();
+                top.forEach(this::offer);
+                publish();
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh top conversations: {}", e.getMessage());
+        }
+    }
+
+    private void offer(ConversationCount candidate) {
+        ConversationCount member = members.remove(candidate.id());
+        if (member != null) {
+            heap.remove(member);
+        } else if (heap.size() >= capacity) {
+            if (BY_COUNT.compare(candidate, heap.peek()) <= 0) {
+                return;
+            }
+            members.remove(heap.poll().id());
+        }
+        heap.add(candidate);
+        members.put(candidate.id(), candidate);
+    }
+
+    private void publish() {
+        ranking = heap.stream().sorted(BY_COUNT.reversed()).toList();
+    }
+}
@@ -0,0 +1,114 @@
+package com.labmentix.aichatbot.service;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Correlation ids in the logging MDC and their hand-over between threads.
+ *
+ * An HTTP request or chat message gets an id on arrival. Callbacks that run
+ * later on another thread (mailbox workers, {@code @Async} tasks, HTTP client
+ * threads completing a {@code CompletableFuture}) are wrapped here, so they log
+ * under the MDC that was current when they were created.
+ */
+public final class Correlation {
+
+    public static final String MDC_KEY = "correlationId";
+    public static final String HEADER = "X-Correlation-Id";
+
+    private Correlation() {
+    }
+
+    public static String newId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+    }
+
+    /** Accepts a client-supplied id only if it is short and safe to print. */
+    public static boolean isValid(String id) {
+        return id != null && id.matches("[A-Za-z0-9_-]{1,64}");
+    }
+
+    public static Runnable runnable(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = enter(context);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> supplier(Supplier<T> task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = enter(context);
+            try {
+                return task.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T, R> Function<T, R> function(Function<T, R> task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return value -> {
+            Map<String, String> previous = enter(context);
+            try {
+                return task.apply(value);
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T> Consumer<T> consumer(Consumer<T> task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return value -> {
+            Map<String, String> previous = enter(context);
+            try {
+                task.accept(value);
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T, U> BiConsumer<T, U> biConsumer(BiConsumer<T, U> task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return (t, u) -> {
+            Map<String, String> previous = enter(context);
+            try {
+                task.accept(t, u);
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static Map<String, String> enter(Map<String, String> context) {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        if (context != null) {
+            MDC.setContextMap(context);
+        } else {
+            MDC.clear();
+        }
+        return previous;
+    }
+
+    private static void restore(Map<String, String> previous) {
+        if (previous != null) {
+            MDC.setContextMap(previous);
+        } else {
+            MDC.clear();
+        }
+    }
+}
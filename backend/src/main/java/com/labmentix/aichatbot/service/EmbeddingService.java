@@ -1,11 +1,13 @@
 package com.labmentix.aichatbot.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 @Service
+@Slf4j
 public class EmbeddingService {
 
     private final WebClient webClient;
@@ -26,7 +28,7 @@ public class EmbeddingService {
                 .retrieve()
                 .bodyToMono(double[].class)
                 .onErrorResume(e -> {
-                    System.err.println("Error fetching embedding: " + e.getMessage());
+                    log.error("Error fetching embedding: {}", e.getMessage());
                     return Mono.just(new double[384]); // Return empty vector on error
                 });
     }
@@ -0,0 +1,211 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.EngagementDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Active users, active conversations and reply time/length distributions per
+ * day, kept as sketches so any date range costs one small blob per day and
+ * metric, however many messages it covers.
+ *
+ * Chat events update in-memory sketches of the current day(s). They are merged
+ * into the {@code analytics_sketches} row of their day every minute (and on
+ * shutdown) under a row lock, so several nodes can feed the same day. Reads
+ * merge the stored rows with what has not been persisted yet.
+ */
+@Service
+@Slf4j
+public class EngagementSketchService {
+
+    private static final int MAX_RANGE_DAYS = 366;
+
+    static final String ACTIVE_USERS = "active_users";
+    static final String ACTIVE_CONVERSATIONS = "active_conversations";
+    static final String RESPONSE_TIME_MS = "response_time_ms";
+    static final String RESPONSE_LENGTH = "response_length";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** The sketches of one day. */
+    private static final class Day {
+        final HyperLogLog users = new HyperLogLog();
+        final HyperLogLog conversations = new HyperLogLog();
+        final QuantileSketch responseTime = new QuantileSketch();
+        final QuantileSketch responseLength = new QuantileSketch();
+
+        void merge(Day other) {
+            users.merge(other.users);
+            conversations.merge(other.conversations);
+            responseTime.merge(other.responseTime);
+            responseLength.merge(other.responseLength);
+        }
+
+        void merge(String metric, byte[] blob) {
+            switch (metric) {
+                case ACTIVE_USERS -> users.merge(HyperLogLog.fromBytes(blob));
+                case ACTIVE_CONVERSATIONS -> conversations.merge(HyperLogLog.fromBytes(blob));
+                case RESPONSE_TIME_MS -> responseTime.merge(QuantileSketch.fromBytes(blob));
+                case RESPONSE_LENGTH -> responseLength.merge(QuantileSketch.fromBytes(blob));
+                default -> log.warn("Ignoring unknown sketch metric {}", metric);
+            }
+        }
+
+        Map<String, byte[]> blobs() {
+            Map<String, byte[]> blobs = new HashMap<>();
+            blobs.put(ACTIVE_USERS, users.toBytes());
+            blobs.put(ACTIVE_CONVERSATIONS, conversations.toBytes());
+            if (responseTime.count() > 0) {
+                blobs.put(RESPONSE_TIME_MS, responseTime.toBytes());
+            }
+            if (responseLength.count() > 0) {
+                blobs.put(RESPONSE_LENGTH, responseLength.toBytes());
+            }
+            return blobs;
+        }
+    }
+
+    // Not yet persisted, by day
+    private Map<LocalDate, Day> unsaved = new HashMap<>();
+
+    /** Counts the senders and conversations of persisted messages. */
+    public void recordMessages(Collection<MessageWriteBehind.PendingMessage> messages) {
+        synchronized (this) {
+            for (MessageWriteBehind.PendingMessage m : messages) {
+                if (m.timestamp() == null) {
+                    continue;
+                }
+                Day day = unsaved.computeIfAbsent(m.timestamp().toLocalDate(), d -> new Day());
+                day.conversations.add(m.conversationId());
+                if (m.senderId() != null) {
+                    day.users.add(m.senderId());
+                }
+            }
+        }
+    }
+
+    /** A completed AI reply: time from the request to the full answer, and its length in characters. */
+    public synchronized void recordResponse(long elapsedMs, int length) {
+        Day day = unsaved.computeIfAbsent(LocalDate.now(), d -> new Day());
+        day.responseTime.add(elapsedMs);
+        day.responseLength.add(length);
+    }
+
+    public EngagementDTO engagement(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        if (from.plusDays(MAX_RANGE_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Range is limited to " + MAX_RANGE_DAYS + " days");
+        }
+
+        Map<LocalDate, Day> days = new TreeMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            days.put(d, new Day());
+        }
+        jdbcTemplate.query("SELECT bucket_date, metric, sketch FROM analytics_sketches WHERE bucket_date BETWEEN ? AND ?",
+                rs -> {
+                    days.get(rs.getDate(1).toLocalDate()).merge(rs.getString(2), rs.getBytes(3));
+                }, Date.valueOf(from), Date.valueOf(to));
+        synchronized (this) {
+            unsaved.forEach((date, day) -> {
+                if (days.containsKey(date)) {
+                    days.get(date).merge(day);
+                }
+            });
+        }
+
+        Day total = new Day();
+        Map<String, Long> usersPerDay = new TreeMap<>();
+        Map<String, Long> conversationsPerDay = new TreeMap<>();
+        days.forEach((date, day) -> {
+            usersPerDay.put(date.toString(), day.users.estimate());
+            conversationsPerDay.put(date.toString(), day.conversations.estimate());
+            total.merge(day);
+        });
+        return EngagementDTO.builder()
+                .from(from.toString())
+                .to(to.toString())
+                .activeUsers(total.users.estimate())
+                .activeConversations(total.conversations.estimate())
+                .activeUsersPerDay(usersPerDay)
+                .conversationsPerDay(conversationsPerDay)
+                .responseTimeMs(percentiles(total.responseTime))
+                .responseLength(percentiles(total.responseLength))
+                .build();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${chat.sketches.persist-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void persist() {
+        Map<LocalDate, Day> batch;
+        synchronized (this) {
+            if (unsaved.isEmpty()) {
+                return;
+            }
+            batch = unsaved;
+            unsaved = new HashMap<>();
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        batch.forEach((date, day) -> day.blobs().forEach((metric, blob) -> {
+            try {
+                try {
+                    transaction.executeWithoutResult(status -> mergeInto(date, metric, blob));
+                } catch (DuplicateKeyException e) {
+                    // Another node created the row first, it can be merged into now
+                    transaction.executeWithoutResult(status -> mergeInto(date, metric, blob));
+                }
+            } catch (Exception e) {
+                log.error("Failed to persist {} sketch of {}: {}", metric, date, e.getMessage());
+                synchronized (this) {
+                    unsaved.computeIfAbsent(date, d -> new Day()).merge(metric, blob);
+                }
+            }
+        }));
+    }
+
+    private void mergeInto(LocalDate date, String metric, byte[] blob) {
+        List<byte[]> stored = jdbcTemplate.query(
+                "SELECT sketch FROM analytics_sketches WHERE bucket_date = ? AND metric = ? FOR UPDATE",
+                (rs, i) -> rs.getBytes(1), Date.valueOf(date), metric);
+        if (stored.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO analytics_sketches (bucket_date, metric, sketch) VALUES (?, ?, ?)",
+                    Date.valueOf(date), metric, blob);
+            return;
+        }
+        Day merged = new Day();
+        merged.merge(metric, stored.get(0));
+        merged.merge(metric, blob);
+        jdbcTemplate.update("UPDATE analytics_sketches SET sketch = ? WHERE bucket_date = ? AND metric = ?",
+                merged.blobs().get(metric), Date.valueOf(date), metric);
+    }
+
+    private static EngagementDTO.Percentiles percentiles(QuantileSketch sketch) {
+        return EngagementDTO.Percentiles.builder()
+                .count(sketch.count())
+                .p50(Math.round(sketch.quantile(0.50)))
+                .p95(Math.round(sketch.quantile(0.95)))
+                .p99(Math.round(sketch.quantile(0.99)))
+                .build();
+    }
+}
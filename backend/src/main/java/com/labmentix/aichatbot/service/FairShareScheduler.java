@@ -0,0 +1,193 @@
+package com.labmentix.aichatbot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Weighted fair queuing of chat work across users (deficit round robin).
+ *
+ * At most {@code max-concurrent} tasks run at once; when slots are scarce each
+ * user with queued work gets a share proportional to its weight, so one busy
+ * user cannot push everybody else to the back of a single FIFO queue.
+ */
+@Component
+@Slf4j
+public class FairShareScheduler {
+
+    @Value("${chat.admission.max-concurrent:16}")
+    private int maxConcurrent;
+
+    @Value("${chat.admission.max-queued-per-user:10}")
+    private int maxQueuedPerUser;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Guarded by this
+    private final Map<Long, UserQueue> queues = new HashMap<>();
+    private final Queue<Long> activeUsers = new ArrayDeque<>();
+    private int running;
+    private int queued;
+    // Tasks started in each second of the last minute, indexed by second modulo 60
+    private final int[] startsPerSecond = new int[60];
+    private long startsSecond = currentSecond();
+
+    private Timer queueWaitTimer;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.admission.running", this, s -> s.snapshotRunning()).register(meterRegistry);
+        Gauge.builder("chat.admission.queued", this, s -> s.snapshotQueued()).register(meterRegistry);
+        queueWaitTimer = Timer.builder("chat.admission.queue.wait")
+                .description("Time admitted chat work waits for a fair-share slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues work for the user. Returns false if the user's queue is full.
+     * The slot is held until the future returned by the task completes.
+     */
+    public boolean submit(Long userId, int weight, Supplier<CompletableFuture<?>> task) {
+        synchronized (this) {
+            UserQueue queue = queues.computeIfAbsent(userId, id -> new UserQueue());
+            if (queue.tasks.size() >= maxQueuedPerUser) {
+                return false;
+            }
+            queue.weight = Math.max(1, weight);
+            queue.tasks.add(new Pending(task, System.nanoTime()));
+            queued++;
+            if (!queue.active) {
+                queue.active = true;
+                activeUsers.add(userId);
+            }
+        }
+        dispatch();
+        return true;
+    }
+
+    private void dispatch() {
+        List<Pending> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (running < maxConcurrent && !activeUsers.isEmpty()) {
+                Long userId = activeUsers.poll();
+                UserQueue queue = queues.get(userId);
+                queue.deficit += queue.weight;
+                while (queue.deficit >= 1 && !queue.tasks.isEmpty() && running < maxConcurrent) {
+                    toStart.add(queue.tasks.poll());
+                    queue.deficit--;
+                    queued--;
+                    running++;
+                    countStart();
+                }
+                if (queue.tasks.isEmpty()) {
+                    queues.remove(userId);
+                } else {
+                    activeUsers.add(userId);
+                }
+            }
+        }
+        toStart.forEach(this::start);
+    }
+
+    private void start(Pending pending) {
+        queueWaitTimer.record(Duration.ofNanos(System.nanoTime() - pending.enqueuedAt));
+        CompletableFuture<?> result;
+        try {
+            result = pending.task.get();
+        } catch (Exception e) {
+            log.warn("Fair-share task failed to start: {}", e.getMessage());
+            result = CompletableFuture.completedFuture(null);
+        }
+        if (result == null) {
+            result = CompletableFuture.completedFuture(null);
+        }
+        result.whenComplete((v, ex) -> release());
+    }
+
+    private void release() {
+        synchronized (this) {
+            running--;
+        }
+        dispatch();
+    }
+
+    /**
+     * True while interactive work is waiting for a slot or all slots are taken;
+     * background work should hold back until this clears.
+     */
+    public synchronized boolean isSaturated() {
+        return queued > 0 || running >= maxConcurrent;
+    }
+
+    /**
+     * Tasks started in the last minute. Each one is an interactive upstream call,
+     * which background work sharing the same upstream limit has to leave room for.
+     */
+    public synchronized int startedLastMinute() {
+        advanceTo(currentSecond());
+        int total = 0;
+        for (int starts : startsPerSecond) {
+            total += starts;
+        }
+        return total;
+    }
+
+    // Guarded by this
+    private void countStart() {
+        long second = currentSecond();
+        advanceTo(second);
+        startsPerSecond[Math.floorMod(second, startsPerSecond.length)]++;
+    }
+
+    // Guarded by this; clears the buckets of the seconds that passed since the last call
+    private void advanceTo(long second) {
+        if (second - startsSecond >= startsPerSecond.length) {
+            Arrays.fill(startsPerSecond, 0);
+        } else {
+            for (long s = startsSecond + 1; s <= second; s++) {
+                startsPerSecond[Math.floorMod(s, startsPerSecond.length)] = 0;
+            }
+        }
+        startsSecond = Math.max(startsSecond, second);
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+
+    private synchronized int snapshotRunning() {
+        return running;
+    }
+
+    private synchronized int snapshotQueued() {
+        return queued;
+    }
+
+    private static class UserQueue {
+        private final Queue<Pending> tasks = new ArrayDeque<>();
+        private int weight = 1;
+        private int deficit;
+        private boolean active;
+    }
+
+    private record Pending(Supplier<CompletableFuture<?>> task, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.labmentix.aichatbot.service;
+
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One in-flight AI generation. The AI service attaches the upstream request
+ * future so that {@link #cancel()} can abort it. Streamed replies
+ * ({@link StreamingChatService}) append their chunks as they arrive so a
+ * cancelled reply can still be kept; the WebSocket path gets its reply in one
+ * piece and has no partial text.
+ */
+public class GenerationHandle {
+
+    @Getter
+    private final Long conversationId;
+    @Getter
+    private final Long userId;
+    @Getter
+    private final String sessionId;
+
+    private final long startedAtNanos = System.nanoTime();
+    private final StringBuilder partial = new StringBuilder();
+    private CompletableFuture<?> upstream;
+    private volatile boolean cancelled;
+    private final AtomicBoolean persisted = new AtomicBoolean();
+
+    public GenerationHandle(Long conversationId, Long userId, String sessionId) {
+        this.conversationId = conversationId;
+        this.userId = userId;
+        this.sessionId = sessionId;
+    }
+
+    public synchronized void attach(CompletableFuture<?> upstream) {
+        this.upstream = upstream;
+        if (cancelled) {
+            upstream.cancel(true);
+        }
+    }
+
+    public synchronized boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        if (upstream != null) {
+            // HttpClient aborts the exchange when its sendAsync future is cancelled
+            upstream.cancel(true);
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long elapsedMillis() {
+        return java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+    }
+
+    /**
+     * Claims the right to store the reply. A stream can end and be cancelled at
+     * nearly the same time, and only the first of the two may write it.
+     */
+    public boolean markPersisted() {
+        return persisted.compareAndSet(false, true);
+    }
+
+    public synchronized void appendPartial(String text) {
+        partial.append(text);
+    }
+
+    public synchronized String partialText() {
+        return partial.toString();
+    }
+}
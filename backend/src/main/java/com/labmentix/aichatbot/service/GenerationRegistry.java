@@ -0,0 +1,80 @@
+package com.labmentix.aichatbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-flight AI generations by conversation. The conversation mailbox allows at
+ * most one generation per conversation, so the conversation id is the key.
+ */
+@Component
+@Slf4j
+public class GenerationRegistry {
+
+    @Value("${chat.generation.cancel-on-disconnect:false}")
+    private boolean cancelOnDisconnect;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Long, GenerationHandle> inFlight = new ConcurrentHashMap<>();
+
+    private Counter cancelledCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.generation.inflight", inFlight, Map::size).register(meterRegistry);
+        cancelledCounter = Counter.builder("chat.generation.cancelled").register(meterRegistry);
+    }
+
+    public GenerationHandle start(Long conversationId, Long userId, String sessionId) {
+        GenerationHandle handle = new GenerationHandle(conversationId, userId, sessionId);
+        inFlight.put(conversationId, handle);
+        return handle;
+    }
+
+    public void finish(GenerationHandle handle) {
+        inFlight.remove(handle.getConversationId(), handle);
+    }
+
+    /**
+     * Cancels the conversation's generation if it belongs to the user.
+     */
+    public boolean cancel(Long conversationId, Long userId) {
+        GenerationHandle handle = inFlight.get(conversationId);
+        if (handle == null || !handle.getUserId().equals(userId)) {
+            return false;
+        }
+        return cancel(handle);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        if (!cancelOnDisconnect) {
+            return;
+        }
+        inFlight.values().stream()
+                .filter(handle -> event.getSessionId().equals(handle.getSessionId()))
+                .forEach(this::cancel);
+    }
+
+    private boolean cancel(GenerationHandle handle) {
+        if (!handle.cancel()) {
+            return false;
+        }
+        cancelledCounter.increment();
+        log.info("Cancelled generation for conversation {}", handle.getConversationId());
+        return true;
+    }
+}
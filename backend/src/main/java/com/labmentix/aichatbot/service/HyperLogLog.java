@@ -0,0 +1,90 @@
+package com.labmentix.aichatbot.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog distinct counter over long ids with 2^{@value #PRECISION} one-byte
+ * registers (4 KB, about 1.6% standard error). Sketches merge by taking the
+ * register-wise maximum, so per-day sketches combine into any range.
+ */
+public final class HyperLogLog {
+
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final byte FORMAT = 1;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(new byte[REGISTERS]);
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Leading zeros of the remaining bits, with a sentinel so the rank is bounded
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Small ranges: linear counting is more accurate
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(registers.clone());
+    }
+
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(2 + REGISTERS).put(FORMAT).put((byte) PRECISION).put(registers).array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() != FORMAT || buffer.get() != PRECISION) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog format");
+        }
+        byte[] registers = new byte[REGISTERS];
+        buffer.get(registers);
+        return new HyperLogLog(registers);
+    }
+
+    // Murmur3 finalizer: spreads sequential ids over all 64 bits
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
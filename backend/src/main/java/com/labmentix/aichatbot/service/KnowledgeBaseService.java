@@ -5,6 +5,8 @@ import com.labmentix.aichatbot.repository.KnowledgeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -52,4 +54,18 @@ public class KnowledgeBaseService {
                 .map(KnowledgeDocument::getContent)
                 .collect(Collectors.joining("\n---\n"));
     }
+
+    /**
+     * Non-blocking variant of {@link #searchContext(String)}: the embedding is fetched
+     * reactively and the JDBC similarity query runs on the bounded elastic scheduler.
+     */
+    public Mono<String> searchContextAsync(String query) {
+        return embeddingService.getEmbedding(query)
+                .publishOn(Schedulers.boundedElastic())
+                .map(queryEmbedding -> knowledgeRepository
+                        .findSimilarDocuments(Arrays.toString(queryEmbedding), 3).stream()
+                        .map(KnowledgeDocument::getContent)
+                        .collect(Collectors.joining("\n---\n")))
+                .defaultIfEmpty("");
+    }
 }
@@ -0,0 +1,155 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.LiveAnalyticsDTO;
+import com.labmentix.aichatbot.model.MessageType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process counters of chat activity for the live dashboard, fed directly by
+ * the chat pipeline so the dashboard needs no queries after its first paint.
+ *
+ * Totals are {@link LongAdder}s; the last minute is kept in a ring of
+ * per-second buckets that are reused as time moves on. Once per interval the
+ * seconds completed since the last frame are pushed to {@link #TOPIC}, which
+ * only admins may subscribe to, and nothing is sent while nobody listens. The
+ * numbers are this node's only.
+ */
+@Service
+public class LiveAnalyticsService {
+
+    public static final String TOPIC = "/topic/analytics";
+    private static final int WINDOW_SECONDS = 60;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private SimpUserRegistry userRegistry;
+
+    private final long startedAt = System.currentTimeMillis();
+    private final LongAdder userMessages = new LongAdder();
+    private final LongAdder aiMessages = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder failedResponses = new LongAdder();
+
+    private final Second[] ring = new Second[WINDOW_SECONDS];
+    private long lastPublished = currentSecond() - 1; // Only touched by the scheduler thread
+
+    private static final class Second {
+        private volatile long epochSecond = -1;
+        private final LongAdder userMessages = new LongAdder();
+        private final LongAdder aiMessages = new LongAdder();
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder failedResponses = new LongAdder();
+        private final LongAdder responseMs = new LongAdder();
+    }
+
+    public LiveAnalyticsService() {
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            ring[i] = new Second();
+        }
+    }
+
+    public void messageAccepted(MessageType type) {
+        Second second = current();
+        if (type == MessageType.AI) {
+            aiMessages.increment();
+            second.aiMessages.increment();
+        } else {
+            userMessages.increment();
+            second.userMessages.increment();
+        }
+    }
+
+    public void responseCompleted(long elapsedMs) {
+        Second second = current();
+        responses.increment();
+        second.responses.increment();
+        second.responseMs.add(elapsedMs);
+    }
+
+    public void responseFailed() {
+        failedResponses.increment();
+        current().failedResponses.increment();
+    }
+
+    /** Totals and the last minute, for the first paint of the dashboard. */
+    public LiveAnalyticsDTO snapshot() {
+        long now = currentSecond();
+        return frame(now - WINDOW_SECONDS + 1, now - 1);
+    }
+
+    @Scheduled(fixedRateString = "${chat.analytics.live.publish-interval-ms:1000}")
+    public void publish() {
+        long now = currentSecond();
+        long from = Math.max(lastPublished + 1, now - WINDOW_SECONDS + 1);
+        lastPublished = now - 1;
+        if (from > now - 1 || userRegistry.findSubscriptions(s -> TOPIC.equals(s.getDestination())).isEmpty()) {
+            return;
+        }
+        messagingTemplate.convertAndSend(TOPIC, frame(from, now - 1));
+    }
+
+    private LiveAnalyticsDTO frame(long fromSecond, long toSecond) {
+        List<LiveAnalyticsDTO.Point> points = new ArrayList<>();
+        for (long s = fromSecond; s <= toSecond; s++) {
+            Second second = ring[slot(s)];
+            if (second.epochSecond != s) {
+                points.add(LiveAnalyticsDTO.Point.builder().second(s).build());
+                continue;
+            }
+            long completed = second.responses.sum();
+            points.add(LiveAnalyticsDTO.Point.builder()
+                    .second(s)
+                    .userMessages(second.userMessages.sum())
+                    .aiMessages(second.aiMessages.sum())
+                    .responses(completed)
+                    .failedResponses(second.failedResponses.sum())
+                    .avgResponseMs(completed > 0 ? second.responseMs.sum() / completed : 0)
+                    .build());
+        }
+        return LiveAnalyticsDTO.builder()
+                .startedAt(startedAt)
+                .userMessages(userMessages.sum())
+                .aiMessages(aiMessages.sum())
+                .responses(responses.sum())
+                .failedResponses(failedResponses.sum())
+                .points(points)
+                .build();
+    }
+
+    private Second current() {
+        long now = currentSecond();
+        Second second = ring[slot(now)];
+        if (second.epochSecond != now) {
+            synchronized (second) {
+                if (second.epochSecond != now) {
+                    // The slot last held the same second a minute ago
+                    second.userMessages.reset();
+                    second.aiMessages.reset();
+                    second.responses.reset();
+                    second.failedResponses.reset();
+                    second.responseMs.reset();
+                    second.epochSecond = now;
+                }
+            }
+        }
+        return second;
+    }
+
+    private static int slot(long epochSecond) {
+        return (int) (epochSecond % WINDOW_SECONDS);
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
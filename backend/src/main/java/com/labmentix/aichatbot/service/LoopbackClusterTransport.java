@@ -0,0 +1,38 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.ClusterEnvelope;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM transport. All application contexts in the same JVM share one bus,
+ * which lets tests run several "nodes" side by side without infrastructure.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.mode", havingValue = "loopback")
+public class LoopbackClusterTransport implements ClusterTransport {
+
+    private static final List<Consumer<ClusterEnvelope>> BUS = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<ClusterEnvelope>> ownListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(ClusterEnvelope envelope) {
+        BUS.forEach(listener -> listener.accept(envelope));
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterEnvelope> listener) {
+        ownListeners.add(listener);
+        BUS.add(listener);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void close() {
+        BUS.removeAll(ownListeners);
+    }
+}
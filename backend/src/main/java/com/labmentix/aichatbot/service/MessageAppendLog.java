@@ -0,0 +1,149 @@
+package com.labmentix.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Local append-only log of messages accepted by {@link MessageWriteBehind} but
+ * not yet flushed. One JSON line per message, split into segments of
+ * {@link #SEGMENT_RECORDS} records; a sealed segment is deleted once all of its
+ * messages are in the database. Whatever is left on startup is replayed.
+ */
+@Slf4j
+class MessageAppendLog {
+
+    private static final int SEGMENT_RECORDS = 1000;
+
+    private final Path dir;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+
+    private Segment current;
+    private long segmentCounter;
+
+    MessageAppendLog(Path dir, boolean fsync, ObjectMapper objectMapper) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Messages of segments left over by a previous run, oldest segment first. */
+    List<MessageWriteBehind.PendingMessage> recover() throws IOException {
+        List<MessageWriteBehind.PendingMessage> recovered = new ArrayList<>();
+        for (Path file : leftoverSegments()) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        recovered.add(objectMapper.readValue(line, MessageWriteBehind.PendingMessage.class));
+                    } catch (IOException e) {
+                        // A torn last line from a crash mid-write, nothing after it is usable
+                        log.warn("Stopping replay of {} at an unreadable record", file.getFileName());
+                        break;
+                    }
+                }
+            }
+        }
+        return recovered;
+    }
+
+    /** Deletes the segments returned by {@link #recover()} once their messages are persisted. */
+    void discardRecovered() throws IOException {
+        for (Path file : leftoverSegments()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    synchronized Segment append(MessageWriteBehind.PendingMessage message) throws IOException {
+        if (current == null || current.records >= SEGMENT_RECORDS) {
+            rotate();
+        }
+        byte[] line = (objectMapper.writeValueAsString(message) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            current.channel.write(buffer);
+        }
+        if (fsync) {
+            current.channel.force(false);
+        }
+        current.records++;
+        current.unflushed++;
+        return current;
+    }
+
+    synchronized void flushed(Segment segment) {
+        segment.unflushed--;
+        if (segment.sealed && segment.unflushed == 0) {
+            delete(segment);
+        }
+    }
+
+    synchronized void close() {
+        if (current != null) {
+            seal(current);
+            current = null;
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (current != null) {
+            seal(current);
+        }
+        Path file = dir.resolve(String.format("segment-%d-%06d.log", System.currentTimeMillis(), segmentCounter++));
+        current = new Segment(file, FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    private void seal(Segment segment) {
+        segment.sealed = true;
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close message log segment {}: {}", segment.file.getFileName(), e.getMessage());
+        }
+        if (segment.unflushed == 0) {
+            delete(segment);
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Failed to delete message log segment {}: {}", segment.file.getFileName(), e.getMessage());
+        }
+    }
+
+    private List<Path> leftoverSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".log"))
+                    .filter(f -> current == null || !f.equals(current.file))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private int records;
+        private int unflushed;
+        private boolean sealed;
+
+        private Segment(Path file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.MessageView;
+import com.labmentix.aichatbot.model.MessageStatus;
+import com.labmentix.aichatbot.model.MessageType;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Messages of partitions that {@link MessagePartitionService} moved out of the
+ * database. Each archived partition is one {@link MessageArchiveFile} under
+ * {@code chat.messages.archive.dir}; {@code message_archive_conversations}
+ * records where every conversation's block is, so history reads of an archived
+ * conversation cost one lookup and one positioned read per archived month.
+ *
+ * Archived rows never change, so decoded conversations are cached. Deleting a
+ * conversation drops its catalog rows, which makes its archived messages
+ * unreachable; the bytes stay in the file until it is removed.
+ */
+@Service
+@Slf4j
+public class MessageArchive {
+
+    record Part(String partitionName, String fileName, long offset, int length, Long maxSeq) {
+    }
+
+    @Value("${chat.messages.archive.dir:./data/message-archive}")
+    private String archiveDir;
+
+    @Value("${chat.messages.archive.cache-size:500}")
+    private int cacheSize;
+
+    @Value("${chat.messages.archive.cache-ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BoundedCache<Long, List<Part>> parts;
+    private BoundedCache<Long, List<MessageView>> messages;
+
+    @PostConstruct
+    void init() {
+        Duration ttl = Duration.ofSeconds(cacheTtlSeconds);
+        // Most conversations have no archived part; the empty answer is cached as well
+        parts = new BoundedCache<>("archive-parts", cacheSize * 20, ttl);
+        parts.bindTo(meterRegistry);
+        messages = new BoundedCache<>("archive-messages", cacheSize, ttl);
+        messages.bindTo(meterRegistry);
+    }
+
+    /**
+     * Up to {@code limit} archived messages of the conversation next to the keyset
+     * position: the newest ones before {@code before}, or the oldest ones after
+     * {@code after}. Ordered by id ascending.
+     */
+    public List<MessageView> page(Long conversationId, Long before, Long after, int limit) {
+        if (parts(conversationId).isEmpty()) {
+            return List.of();
+        }
+        List<MessageView> all = messages.get(conversationId, this::load);
+        if (after != null) {
+            return all.stream().filter(m -> m.getId() > after).limit(limit).toList();
+        }
+        List<MessageView> older = all.stream().filter(m -> before == null || m.getId() < before).toList();
+        return older.subList(Math.max(0, older.size() - limit), older.size());
+    }
+
+    /** The highest sequence number among the conversation's archived messages, 0 if none. */
+    public long maxSeq(Long conversationId) {
+        return parts(conversationId).stream()
+                .map(Part::maxSeq)
+                .filter(java.util.Objects::nonNull)
+                .max(Long::compare)
+                .orElse(0L);
+    }
+
+    /** Drops the catalog entries of a deleted conversation. */
+    public void forget(Long conversationId) {
+        jdbcTemplate.update("DELETE FROM message_archive_conversations WHERE conversation_id = ?", conversationId);
+        parts.invalidate(conversationId);
+        messages.invalidate(conversationId);
+    }
+
+    /**
+     * Writes the rows of {@code partition} to its archive file and returns the
+     * blocks, to be recorded with {@link #register} in the transaction that
+     * drops the partition.
+     */
+    List<MessageArchiveFile.Block> write(String partition, JdbcTemplate streaming) throws IOException {
+        Path dir = Files.createDirectories(Path.of(archiveDir));
+        try (MessageArchiveFile.Writer writer = new MessageArchiveFile.Writer(dir.resolve(fileName(partition)))) {
+            // Rows of tombstoned conversations are left behind and go away with the partition
+            streaming.query("SELECT m.conversation_id, m.id, m.content, u.username, m.type, m.status, m.timestamp, "
+                    + "m.seq, m.attachment_url, m.attachment_type FROM " + partition + " m "
+                    + "JOIN conversations c ON c.id = m.conversation_id "
+                    + "LEFT JOIN users u ON u.id = m.sender_id "
+                    + "WHERE c.deleted_at IS NULL ORDER BY m.conversation_id, m.id", rs -> {
+                        Timestamp timestamp = rs.getTimestamp(7);
+                        String type = rs.getString(5);
+                        String status = rs.getString(6);
+                        try {
+                            writer.add(rs.getLong(1), new MessageView(rs.getLong(2), rs.getString(3), rs.getString(4),
+                                    type != null ? MessageType.valueOf(type) : null,
+                                    status != null ? MessageStatus.valueOf(status) : null,
+                                    timestamp != null ? timestamp.toLocalDateTime() : null,
+                                    rs.getObject(8, Long.class), rs.getString(9), rs.getString(10)));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            return writer.finish();
+        }
+    }
+
+    /** Records where each conversation of an archived partition is; runs in the caller's transaction. */
+    void register(String partition, List<MessageArchiveFile.Block> blocks) {
+        jdbcTemplate.batchUpdate("INSERT INTO message_archive_conversations (conversation_id, partition_name, "
+                        + "file_name, block_offset, block_length, message_count, max_seq) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                blocks, 500, (ps, block) -> {
+                    ps.setLong(1, block.conversationId());
+                    ps.setString(2, partition);
+                    ps.setString(3, fileName(partition));
+                    ps.setLong(4, block.offset());
+                    ps.setInt(5, block.length());
+                    ps.setInt(6, block.rows());
+                    ps.setObject(7, block.maxSeq());
+                });
+    }
+
+    /** Called after a partition was archived, so reads pick up the new parts. */
+    void archived() {
+        parts.invalidateAll();
+        messages.invalidateAll();
+    }
+
+    private List<Part> parts(Long conversationId) {
+        return this.parts.get(conversationId, id -> jdbcTemplate.query(
+                "SELECT partition_name, file_name, block_offset, block_length, max_seq "
+                        + "FROM message_archive_conversations WHERE conversation_id = ?",
+                (rs, rowNum) -> new Part(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getInt(4),
+                        rs.getObject(5, Long.class)),
+                id));
+    }
+
+    private List<MessageView> load(Long conversationId) {
+        List<MessageView> all = new ArrayList<>();
+        for (Part part : parts(conversationId)) {
+            Path file = Path.of(archiveDir, part.fileName());
+            try {
+                all.addAll(MessageArchiveFile.read(file, part.offset(), part.length()));
+            } catch (IOException e) {
+                // Without the file (e.g. another node's disk) the rest of the history is still served
+                log.warn("Archived messages of conversation {} in {} are unavailable: {}",
+                        conversationId, part.fileName(), e.getMessage());
+            }
+        }
+        all.sort(Comparator.comparing(MessageView::getId));
+        return all;
+    }
+
+    private static String fileName(String partition) {
+        return partition + ".msga";
+    }
+}
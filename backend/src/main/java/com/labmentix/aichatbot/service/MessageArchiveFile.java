@@ -0,0 +1,300 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.MessageView;
+import com.labmentix.aichatbot.model.MessageStatus;
+import com.labmentix.aichatbot.model.MessageType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File format of archived message partitions. A file holds one block per
+ * conversation, each deflated on its own so a conversation is read with one
+ * positioned read. Inside a block the values are stored column by column:
+ * ids, timestamps and sequence numbers as deltas, low-cardinality strings
+ * (type, status, sender, attachment type) through a dictionary, so similar
+ * values sit next to each other and compress well.
+ *
+ * Layout: {@code MAGIC}, then per block the conversation id, the row count, the
+ * compressed length and the compressed bytes. The catalog keeps each block's
+ * offset; the headers let a file be scanned without it.
+ */
+final class MessageArchiveFile {
+
+    private static final int MAGIC = 0x4d534741; // "MSGA"
+    private static final int BLOCK_HEADER = Long.BYTES + 2 * Integer.BYTES;
+
+    /** Where a conversation's block lives in a file. */
+    record Block(Long conversationId, long offset, int length, int rows, Long maxSeq) {
+    }
+
+    private MessageArchiveFile() {
+    }
+
+    /**
+     * Writes blocks to a temporary file next to the target; {@link #finish()}
+     * syncs it and moves it into place, so a crash never leaves a partial archive.
+     * Rows must arrive ordered by conversation and id.
+     */
+    static final class Writer implements AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final List<Block> blocks = new ArrayList<>();
+        private final List<MessageView> pending = new ArrayList<>();
+        private Long pendingConversation;
+        private long position;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            write(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip());
+        }
+
+        void add(Long conversationId, MessageView message) throws IOException {
+            if (pendingConversation != null && !pendingConversation.equals(conversationId)) {
+                writeBlock();
+            }
+            pendingConversation = conversationId;
+            pending.add(message);
+        }
+
+        List<Block> finish() throws IOException {
+            if (!pending.isEmpty()) {
+                writeBlock();
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return blocks;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            byte[] compressed = encode(pending);
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER)
+                    .putLong(pendingConversation).putInt(pending.size()).putInt(compressed.length).flip();
+            write(header);
+            Long maxSeq = pending.stream().map(MessageView::getSeq).filter(Objects::nonNull)
+                    .max(Long::compare).orElse(null);
+            blocks.add(new Block(pendingConversation, position, compressed.length, pending.size(), maxSeq));
+            write(ByteBuffer.wrap(compressed));
+            pending.clear();
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+
+    /** The messages of one block, in id order. */
+    static List<MessageView> read(Path file, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Archive " + file.getFileName() + " is truncated");
+                }
+            }
+        }
+        return decode(new java.io.ByteArrayInputStream(buffer.array()));
+    }
+
+    private static byte[] encode(List<MessageView> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            writeVarLong(out, rows.size());
+            writeDeltas(out, rows, MessageView::getId);
+            writeDeltas(out, rows, m -> m.getTimestamp() != null ? m.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli() : null);
+            writeDeltas(out, rows, MessageView::getSeq);
+            writeDictionary(out, rows, m -> m.getType() != null ? m.getType().name() : null);
+            writeDictionary(out, rows, m -> m.getStatus() != null ? m.getStatus().name() : null);
+            writeDictionary(out, rows, MessageView::getSender);
+            writeDictionary(out, rows, MessageView::getAttachmentType);
+            for (MessageView row : rows) {
+                writeString(out, row.getAttachmentUrl());
+            }
+            for (MessageView row : rows) {
+                writeString(out, row.getContent());
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<MessageView> decode(InputStream compressed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(compressed))) {
+            int size = (int) readVarLong(in);
+            List<MessageView> rows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                rows.add(new MessageView());
+            }
+            Long[] ids = readDeltas(in, size);
+            Long[] timestamps = readDeltas(in, size);
+            Long[] seqs = readDeltas(in, size);
+            String[] types = readDictionary(in, size);
+            String[] statuses = readDictionary(in, size);
+            String[] senders = readDictionary(in, size);
+            String[] attachmentTypes = readDictionary(in, size);
+            for (int i = 0; i < size; i++) {
+                MessageView row = rows.get(i);
+                row.setId(ids[i]);
+                row.setTimestamp(timestamps[i] != null
+                        ? LocalDateTime.ofEpochSecond(Math.floorDiv(timestamps[i], 1000L),
+                                (int) Math.floorMod(timestamps[i], 1000L) * 1_000_000, ZoneOffset.UTC)
+                        : null);
+                row.setSeq(seqs[i]);
+                row.setType(types[i] != null ? MessageType.valueOf(types[i]) : null);
+                row.setStatus(statuses[i] != null ? MessageStatus.valueOf(statuses[i]) : null);
+                row.setSender(senders[i]);
+                row.setAttachmentType(attachmentTypes[i]);
+            }
+            for (MessageView row : rows) {
+                row.setAttachmentUrl(readString(in));
+            }
+            for (MessageView row : rows) {
+                row.setContent(readString(in));
+            }
+            return rows;
+        }
+    }
+
+    // Nullable longs as zigzag deltas from the previous non-null value; 0 marks null
+    private static void writeDeltas(DataOutputStream out, List<MessageView> rows, Function<MessageView, Long> column)
+            throws IOException {
+        long previous = 0;
+        for (MessageView row : rows) {
+            Long value = column.apply(row);
+            if (value == null) {
+                writeVarLong(out, 0);
+                continue;
+            }
+            long delta = value - previous;
+            writeVarLong(out, ((delta << 1) ^ (delta >> 63)) + 1);
+            previous = value;
+        }
+    }
+
+    private static Long[] readDeltas(DataInputStream in, int size) throws IOException {
+        Long[] values = new Long[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long encoded = readVarLong(in);
+            if (encoded == 0) {
+                continue;
+            }
+            long zigzag = encoded - 1;
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    // Distinct values first, then one index per row; index 0 is null
+    private static void writeDictionary(DataOutputStream out, List<MessageView> rows,
+            Function<MessageView, String> column) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (MessageView row : rows) {
+            String value = column.apply(row);
+            if (value != null) {
+                dictionary.putIfAbsent(value, dictionary.size() + 1);
+            }
+        }
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+        for (MessageView row : rows) {
+            String value = column.apply(row);
+            writeVarLong(out, value != null ? dictionary.get(value) : 0);
+        }
+    }
+
+    private static String[] readDictionary(DataInputStream in, int size) throws IOException {
+        String[] dictionary = new String[(int) readVarLong(in) + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            dictionary[i] = readString(in);
+        }
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = dictionary[(int) readVarLong(in)];
+        }
+        return values;
+    }
+
+    // Length + 1 (0 for null), then the UTF-8 bytes; unlike writeUTF there is no 64 KB limit
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in message archive");
+    }
+}
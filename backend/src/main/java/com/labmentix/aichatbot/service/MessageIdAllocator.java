@@ -0,0 +1,44 @@
+package com.labmentix.aichatbot.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out message ids in blocks of {@link #BLOCK_SIZE} from the
+ * {@code message_ids} sequence, so batched inserts know their ids up front and
+ * only one sequence round trip is needed per block. Same "pooled-lo" semantics
+ * as Hibernate's generator on {@code Message}: the sequence value is the first
+ * id of the block.
+ */
+@Component
+public class MessageIdAllocator {
+
+    public static final String SEQUENCE = "message_ids";
+    public static final int BLOCK_SIZE = 50; // Must match the sequence's INCREMENT BY
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private String nextValueSql;
+    private long next;
+    private long limit;
+
+    public synchronized long nextId() {
+        if (next >= limit) {
+            if (nextValueSql == null) {
+                nextValueSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                        .getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString(SEQUENCE);
+            }
+            Long low = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+            next = low;
+            limit = low + BLOCK_SIZE;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,198 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.config.DatabaseDialect;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the Postgres {@code messages} table partitioned by month. Partitions
+ * for the next {@code chat.messages.partitions.months-ahead} months are created
+ * before they are needed; rows of a month that has none land in
+ * {@code messages_default}. {@code message_partitions} lists every partition
+ * with its time range.
+ *
+ * With {@code chat.messages.archive.enabled}, partitions that ended more than
+ * {@code chat.messages.archive.retention-months} ago are written to
+ * {@link MessageArchive} and dropped, so the table only holds recent months.
+ * Runs after startup and daily; on several nodes only one does the work. H2 has
+ * no partitions and is left alone.
+ */
+@Service
+@Slf4j
+public class MessagePartitionService {
+
+    private static final long ADVISORY_LOCK_KEY = 0x6d7061L; // any constant shared by all nodes
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Value("${chat.messages.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${chat.messages.archive.enabled:false}")
+    private boolean archiveEnabled;
+
+    @Value("${chat.messages.archive.retention-months:12}")
+    private int retentionMonths;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabaseDialect dialect;
+
+    @Autowired
+    private MessageArchive messageArchive;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter archivedRows;
+    private Timer archiveTimer;
+
+    @PostConstruct
+    public void init() {
+        archivedRows = Counter.builder("chat.messages.archived")
+                .description("Messages moved from dropped partitions to archive files")
+                .register(meterRegistry);
+        archiveTimer = Timer.builder("chat.messages.archive.time")
+                .description("Time to archive and drop one message partition")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${chat.messages.partitions.maintenance-cron:0 30 1 * * *}")
+    public void maintain() {
+        if (!dialect.isPostgres()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                // The lock belongs to this connection; the work itself uses other pooled connections
+                JdbcTemplate lock = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                if (!Boolean.TRUE.equals(lock.queryForObject("SELECT pg_try_advisory_lock(?)", Boolean.class,
+                        ADVISORY_LOCK_KEY))) {
+                    log.debug("Message partition maintenance is running on another node");
+                    return null;
+                }
+                try {
+                    createAhead();
+                    if (archiveEnabled) {
+                        archiveExpired();
+                    }
+                } finally {
+                    lock.queryForObject("SELECT pg_advisory_unlock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Message partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    private void createAhead() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            LocalDateTime start = month.atDay(1).atStartOfDay();
+            LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+            // Months inside an existing range (the legacy partition, or created earlier) are skipped
+            Integer overlapping = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_partitions "
+                    + "WHERE range_end > ? AND (range_start IS NULL OR range_start < ?)",
+                    Integer.class, Timestamp.valueOf(start), Timestamp.valueOf(end));
+            if (overlapping != null && overlapping > 0) {
+                continue;
+            }
+            String name = "messages_p" + month.format(PARTITION_SUFFIX);
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF messages FOR VALUES FROM ('"
+                            + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+                    jdbcTemplate.update("INSERT INTO message_partitions (partition_name, range_start, range_end) "
+                            + "VALUES (?, ?, ?)", name, Timestamp.valueOf(start), Timestamp.valueOf(end));
+                });
+                log.info("Created message partition {}", name);
+            } catch (DataAccessException e) {
+                // e.g. the month already has rows in messages_default; they stay there
+                log.warn("Could not create message partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void archiveExpired() {
+        LocalDateTime cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1).atStartOfDay();
+        List<String> expired = jdbcTemplate.queryForList("SELECT partition_name FROM message_partitions "
+                + "WHERE archived_at IS NULL AND range_end <= ? ORDER BY range_end", String.class,
+                Timestamp.valueOf(cutoff));
+        for (String partition : expired) {
+            if (!partition.matches("[a-z0-9_]+")) {
+                log.warn("Skipping message partition with unexpected name {}", partition);
+                continue;
+            }
+            try {
+                archiveTimer.recordCallable(() -> {
+                    archive(partition);
+                    return null;
+                });
+            } catch (Exception e) {
+                // The partition stays in place and is retried on the next run
+                log.error("Archiving message partition {} failed: {}", partition, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void archive(String partition) throws Exception {
+        // Postgres only streams a result set inside a transaction; otherwise the whole month is loaded
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(1000);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<MessageArchiveFile.Block> blocks = readOnly.execute(status -> {
+            try {
+                return messageArchive.write(partition, streaming);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        });
+        long rows = blocks.stream().mapToLong(MessageArchiveFile.Block::rows).sum();
+
+        // The file is complete and synced; catalog and drop commit together
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            messageArchive.register(partition, blocks);
+            jdbcTemplate.update("UPDATE message_partitions SET archived_at = ?, archived_rows = ? "
+                    + "WHERE partition_name = ?", Timestamp.valueOf(LocalDateTime.now()), rows, partition);
+            jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        });
+        messageArchive.archived();
+        archivedRows.increment(rows);
+        log.info("Archived message partition {} ({} messages of {} conversations)", partition, rows, blocks.size());
+    }
+}
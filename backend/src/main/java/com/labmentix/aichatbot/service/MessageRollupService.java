@@ -0,0 +1,216 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.config.DatabaseDialect;
+import com.labmentix.aichatbot.model.MessageType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-day message counts by type ({@code message_daily_rollup}) and by sender
+ * ({@code user_daily_rollup}), so the dashboard reads one row per day instead
+ * of scanning messages.
+ *
+ * The message writer adds every flushed batch in the same transaction as its
+ * insert. The rollups count messages sent, and a day's counts are never
+ * rewritten once recorded, so deleting a conversation changes no day. Only days
+ * without any rollup rows are computed from the raw table: the last closed days
+ * by a nightly job and, when the rollup is empty, all of history on startup.
+ * Those can only count the messages still stored.
+ */
+@Service
+@Slf4j
+public class MessageRollupService {
+
+    private static final int MAX_RANGE_DAYS = 3660;
+
+    public enum Granularity {
+        DAY, WEEK, MONTH
+    }
+
+    @Value("${chat.rollup.reconcile-days:7}")
+    private int reconcileDays;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabaseDialect databaseDialect;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private record TypeDay(LocalDate day, String type) {
+    }
+
+    private record UserDay(LocalDate day, Long userId) {
+    }
+
+    /** Adds the messages to the rollups; meant to run in the transaction that inserts them. */
+    public void record(Collection<MessageWriteBehind.PendingMessage> messages) {
+        Map<TypeDay, Long> byType = new LinkedHashMap<>();
+        Map<UserDay, Long> byUser = new LinkedHashMap<>();
+        for (MessageWriteBehind.PendingMessage m : messages) {
+            if (m.timestamp() == null || m.type() == null) {
+                continue;
+            }
+            LocalDate day = m.timestamp().toLocalDate();
+            byType.merge(new TypeDay(day, m.type().name()), 1L, Long::sum);
+            if (m.senderId() != null) {
+                byUser.merge(new UserDay(day, m.senderId()), 1L, Long::sum);
+            }
+        }
+        if (!byType.isEmpty()) {
+            jdbcTemplate.batchUpdate(databaseDialect.incrementingUpsert("message_daily_rollup",
+                    new String[] { "bucket_date", "message_type" },
+                    new String[] { "bucket_date", "message_type", "message_count" },
+                    new String[] { "DATE", "VARCHAR(50)", "BIGINT" }, "message_count"),
+                    byType.entrySet().stream()
+                            .map(e -> new Object[] { Date.valueOf(e.getKey().day()), e.getKey().type(), e.getValue() })
+                            .toList());
+        }
+        if (!byUser.isEmpty()) {
+            jdbcTemplate.batchUpdate(databaseDialect.incrementingUpsert("user_daily_rollup",
+                    new String[] { "bucket_date", "user_id" },
+                    new String[] { "bucket_date", "user_id", "message_count" },
+                    new String[] { "DATE", "BIGINT", "BIGINT" }, "message_count"),
+                    byUser.entrySet().stream()
+                            .map(e -> new Object[] { Date.valueOf(e.getKey().day()), e.getKey().userId(), e.getValue() })
+                            .toList());
+        }
+    }
+
+    /**
+     * Message counts between two days (inclusive) in buckets of the granularity, keyed by
+     * the bucket's first day ({@code yyyy-MM} for months). Empty buckets are included.
+     * With a user the counts are that user's own messages and {@code type} is ignored.
+     */
+    public Map<String, Long> countsByDate(LocalDate from, LocalDate to, Granularity granularity, MessageType type,
+            Long userId) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        if (from.plusDays(MAX_RANGE_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Range is limited to " + MAX_RANGE_DAYS + " days");
+        }
+
+        Map<String, Long> counts = new TreeMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            counts.putIfAbsent(bucket(day, granularity), 0L);
+        }
+
+        String sql;
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        if (userId != null) {
+            sql = "SELECT bucket_date, message_count FROM user_daily_rollup WHERE bucket_date BETWEEN ? AND ? AND user_id = ?";
+            args.add(userId);
+        } else if (type != null) {
+            sql = "SELECT bucket_date, message_count FROM message_daily_rollup WHERE bucket_date BETWEEN ? AND ? AND message_type = ?";
+            args.add(type.name());
+        } else {
+            sql = "SELECT bucket_date, SUM(message_count) FROM message_daily_rollup WHERE bucket_date BETWEEN ? AND ? "
+                    + "GROUP BY bucket_date";
+        }
+        jdbcTemplate.query(sql, rs -> {
+            counts.merge(bucket(rs.getDate(1).toLocalDate(), granularity), rs.getLong(2), Long::sum);
+        }, args.toArray());
+        return counts;
+    }
+
+    /** All messages ever sent, from the rollups. */
+    public long totalMessages() {
+        Long total = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(message_count), 0) FROM message_daily_rollup",
+                Long.class);
+        return total != null ? total : 0L;
+    }
+
+    /** Recomputes the rollups of the days between {@code from} and {@code to} (inclusive) from the messages table. */
+    public void rebuild(LocalDate from, LocalDate to) {
+        Object[] days = { Date.valueOf(from), Date.valueOf(to) };
+        Object[] range = { Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()) };
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM message_daily_rollup WHERE bucket_date BETWEEN ? AND ?", days);
+            jdbcTemplate.update("INSERT INTO message_daily_rollup (bucket_date, message_type, message_count) "
+                    + "SELECT CAST(m.timestamp AS DATE), m.type, COUNT(*) FROM messages m "
+                    + "WHERE m.timestamp >= ? AND m.timestamp < ? GROUP BY CAST(m.timestamp AS DATE), m.type", range);
+            jdbcTemplate.update("DELETE FROM user_daily_rollup WHERE bucket_date BETWEEN ? AND ?", days);
+            jdbcTemplate.update("INSERT INTO user_daily_rollup (bucket_date, user_id, message_count) "
+                    + "SELECT CAST(m.timestamp AS DATE), m.sender_id, COUNT(*) FROM messages m "
+                    + "WHERE m.timestamp >= ? AND m.timestamp < ? AND m.sender_id IS NOT NULL "
+                    + "GROUP BY CAST(m.timestamp AS DATE), m.sender_id", range);
+        });
+    }
+
+    /** Fills closed days that have no rollup rows, e.g. after rows were written outside the message writer. */
+    @Scheduled(cron = "${chat.rollup.reconcile-cron:0 15 0 * * *}")
+    public void reconcile() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate from = yesterday.minusDays(reconcileDays - 1L);
+        try {
+            Set<LocalDate> recorded = new HashSet<>(jdbcTemplate.query(
+                    "SELECT DISTINCT bucket_date FROM message_daily_rollup WHERE bucket_date BETWEEN ? AND ?",
+                    (rs, row) -> rs.getDate(1).toLocalDate(), Date.valueOf(from), Date.valueOf(yesterday)));
+            int filled = 0;
+            for (LocalDate day = from; !day.isAfter(yesterday); day = day.plusDays(1)) {
+                if (!recorded.contains(day)) {
+                    rebuild(day, day);
+                    filled++;
+                }
+            }
+            log.info("Reconciled message rollups of the last {} days, filled {}", reconcileDays, filled);
+        } catch (Exception e) {
+            log.error("Message rollup reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    /** Fills empty rollups from existing messages; runs before buffered messages are replayed. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void backfill() {
+        try {
+            Long rollupRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_daily_rollup", Long.class);
+            if (rollupRows != null && rollupRows > 0) {
+                return;
+            }
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                    "SELECT MIN(m.timestamp) AS first_at, MAX(m.timestamp) AS last_at FROM messages m");
+            if (bounds.get("first_at") instanceof Timestamp first && bounds.get("last_at") instanceof Timestamp last) {
+                rebuild(first.toLocalDateTime().toLocalDate(), last.toLocalDateTime().toLocalDate());
+                log.info("Backfilled message rollups from {} to {}", first.toLocalDateTime().toLocalDate(),
+                        last.toLocalDateTime().toLocalDate());
+            }
+        } catch (Exception e) {
+            log.error("Message rollup backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private static String bucket(LocalDate day, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> day.toString();
+            case WEEK -> day.with(DayOfWeek.MONDAY).toString();
+            case MONTH -> YearMonth.from(day).toString();
+        };
+    }
+}
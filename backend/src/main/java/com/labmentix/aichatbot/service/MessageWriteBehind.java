@@ -0,0 +1,418 @@
+package com.labmentix.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.labmentix.aichatbot.dto.MessageView;
+import com.labmentix.aichatbot.model.Message;
+import com.labmentix.aichatbot.model.MessageStatus;
+import com.labmentix.aichatbot.model.MessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind persistence for chat messages.
+ *
+ * Messages get their id from {@link MessageIdAllocator} and are queued in
+ * memory (and appended to a local log when enabled) instead of being inserted
+ * one by one. A single writer inserts them with JDBC batches, one transaction
+ * per batch, when {@code batch-size} messages are waiting or every
+ * {@code flush-interval-ms}. Until a message is in the database,
+ * {@link #pending(Long)} exposes it so readers can merge it into what they read,
+ * which keeps read-your-writes for the sender.
+ *
+ * At most {@code max-pending} messages are buffered. A producer that finds the
+ * buffer full flushes it itself and is rejected if the database still does not
+ * take the backlog, so an unavailable database turns into errors for the sender
+ * instead of unbounded memory.
+ */
+@Service
+@Slf4j
+public class MessageWriteBehind {
+
+    private static final String INSERT_SQL = "INSERT INTO messages (id, conversation_id, sender_id, content, timestamp, "
+            + "seq, type, status, attachment_url, attachment_type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Value("${chat.persistence.batch-size:100}")
+    private int batchSize;
+
+    @Value("${chat.persistence.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${chat.persistence.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${chat.persistence.log.enabled:false}")
+    private boolean logEnabled;
+
+    @Value("${chat.persistence.log.dir:./data/message-log}")
+    private String logDir;
+
+    @Value("${chat.persistence.log.fsync:false}")
+    private boolean logFsync;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MessageIdAllocator idAllocator;
+
+    @Autowired
+    private ContentVersions contentVersions;
+
+    @Autowired
+    private MessageRollupService messageRollups;
+
+    @Autowired
+    private ConversationStatsService conversationStats;
+
+    @Autowired
+    private EngagementSketchService engagementSketches;
+
+    @Autowired
+    private LiveAnalyticsService liveAnalytics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentLinkedDeque<Entry> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // The batch currently being written, still visible to readers until it is committed
+    private volatile List<Entry> inFlight = List.of();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private ScheduledExecutorService writer;
+    private TransactionTemplate transactionTemplate;
+    private MessageAppendLog appendLog;
+
+    private Counter flushedCounter;
+    private Counter droppedCounter;
+    private Counter rejectedCounter;
+    private Timer flushTimer;
+
+    /** A message accepted for persistence, in the shape of its row. */
+    public record PendingMessage(Long id, Long conversationId, Long senderId, String senderName, String owner,
+            String content, LocalDateTime timestamp, Long seq, MessageType type, MessageStatus status,
+            String attachmentUrl, String attachmentType) {
+
+        public MessageView toView() {
+            return new MessageView(id, content, senderName, type, status, timestamp, seq, attachmentUrl, attachmentType);
+        }
+    }
+
+    private record Entry(PendingMessage message, MessageAppendLog.Segment segment) {
+    }
+
+    @PostConstruct
+    public void init() throws Exception {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (logEnabled) {
+            appendLog = new MessageAppendLog(Path.of(logDir), logFsync, objectMapper);
+        }
+
+        flushedCounter = Counter.builder("chat.persistence.flushed").register(meterRegistry);
+        rejectedCounter = Counter.builder("chat.persistence.rejected")
+                .description("Messages turned away because max-pending were buffered and the database did not take them")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("chat.persistence.dropped")
+                .description("Buffered messages rejected by the database, e.g. for a deleted conversation")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("chat.persistence.flush").register(meterRegistry);
+        Gauge.builder("chat.persistence.pending", queued, AtomicInteger::get).register(meterRegistry);
+
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "message-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Replays what a previous run logged but did not flush; runs after the schema is ensured. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (appendLog == null) {
+            return;
+        }
+        try {
+            List<PendingMessage> recovered = appendLog.recover();
+            if (!recovered.isEmpty()) {
+                List<Entry> entries = recovered.stream().map(m -> new Entry(m, null)).toList();
+                synchronized (flushLock) {
+                    for (int i = 0; i < entries.size(); i += batchSize) {
+                        write(entries.subList(i, Math.min(entries.size(), i + batchSize)));
+                    }
+                }
+                log.info("Recovered {} messages from the local message log", recovered.size());
+            }
+            appendLog.discardRecovered();
+        } catch (Exception e) {
+            log.error("Message log recovery failed, leaving segments in place: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        flushQuietly();
+        if (appendLog != null) {
+            appendLog.close();
+        }
+    }
+
+    /**
+     * Accepts the message for persistence and assigns its id. {@code owner} is the
+     * conversation owner, which is also the sender of non-AI messages.
+     *
+     * @throws RejectedExecutionException if {@code max-pending} messages are buffered
+     *         and the database does not take them, so callers can tell the user to retry
+     */
+    public void enqueue(Message message, String owner) {
+        int size = queued.incrementAndGet();
+        if (size > maxPending) {
+            // The writer is falling behind: the producer pays for a flush, and is turned away
+            // when the database still does not take the backlog
+            flush();
+            if (queued.get() > maxPending) {
+                queued.decrementAndGet();
+                rejectedCounter.increment();
+                throw new RejectedExecutionException("Message buffer is full, the database is not keeping up");
+            }
+        }
+        message.setId(idAllocator.nextId());
+        PendingMessage pending = new PendingMessage(
+                message.getId(),
+                message.getConversation().getId(),
+                message.getSender() != null ? message.getSender().getId() : null,
+                message.getSender() != null ? owner : null,
+                owner,
+                message.getContent(),
+                message.getTimestamp(),
+                message.getSeq(),
+                message.getType(),
+                message.getStatus(),
+                message.getAttachmentUrl(),
+                message.getAttachmentType());
+
+        MessageAppendLog.Segment segment = null;
+        if (appendLog != null) {
+            try {
+                segment = appendLog.append(pending);
+            } catch (Exception e) {
+                log.error("Failed to append message {} to the local log: {}", pending.id(), e.getMessage());
+            }
+        }
+        queue.addLast(new Entry(pending, segment));
+        liveAnalytics.messageAccepted(pending.type());
+
+        if (size >= batchSize && flushRequested.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /**
+     * Buffered messages of the conversation not yet visible in the database.
+     *
+     * A message moves from the queue to the in-flight batch to the database, and the
+     * writer publishes the batch before taking its entries off the queue. Reading the
+     * queue first, then the batch (and the database after this returns) therefore sees
+     * every message at least once; one seen in both places is returned once.
+     */
+    public List<PendingMessage> pending(Long conversationId) {
+        Map<Long, PendingMessage> result = new TreeMap<>();
+        for (Entry entry : queue) {
+            if (entry.message().conversationId().equals(conversationId)) {
+                result.putIfAbsent(entry.message().id(), entry.message());
+            }
+        }
+        for (Entry entry : inFlight) {
+            if (entry.message().conversationId().equals(conversationId)) {
+                result.putIfAbsent(entry.message().id(), entry.message());
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    public long maxPendingSeq(Long conversationId) {
+        return pending(conversationId).stream()
+                .map(PendingMessage::seq)
+                .filter(seq -> seq != null)
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0L);
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            while (true) {
+                // Only this thread removes entries, so the head of the queue is stable while it is copied
+                List<Entry> batch = new ArrayList<>(batchSize);
+                Iterator<Entry> head = queue.iterator();
+                while (batch.size() < batchSize && head.hasNext()) {
+                    batch.add(head.next());
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                // Visible as in flight before it leaves the queue, so readers never miss it in between
+                inFlight = batch;
+                for (int i = 0; i < batch.size(); i++) {
+                    queue.pollFirst();
+                }
+                try {
+                    if (!write(batch)) {
+                        // Database unavailable: put the batch back in order and retry on the next tick
+                        for (int i = batch.size() - 1; i >= 0; i--) {
+                            queue.addFirst(batch.get(i));
+                        }
+                        return;
+                    }
+                } finally {
+                    inFlight = List.of();
+                }
+                queued.addAndGet(-batch.size());
+                if (batch.size() < batchSize) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Message flush failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts the batch in one transaction. Returns false if it should be retried later;
+     * rows the database rejects are dropped individually instead of blocking the queue.
+     */
+    private boolean write(List<Entry> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, e) -> bind(ps, e.message()));
+                recordInserted(batch.stream().map(Entry::message).toList());
+            });
+        } catch (DataIntegrityViolationException e) {
+            writeOneByOne(batch);
+        } catch (DataAccessException e) {
+            log.warn("Deferring {} messages, database write failed: {}", batch.size(), e.getMessage());
+            return false;
+        } finally {
+            sample.stop(flushTimer);
+        }
+        afterWrite(batch);
+        return true;
+    }
+
+    private void writeOneByOne(List<Entry> batch) {
+        for (Entry entry : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, entry.message()));
+                    recordInserted(List.of(entry.message()));
+                });
+            } catch (DuplicateKeyException e) {
+                // Already persisted, e.g. replayed from the log after a crash past the commit
+            } catch (DataIntegrityViolationException e) {
+                droppedCounter.increment();
+                log.warn("Dropping message {} of conversation {}: {}", entry.message().id(),
+                        entry.message().conversationId(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    // Derived counters change in the same transaction as the rows they count
+    private void recordInserted(List<PendingMessage> messages) {
+        messageRollups.record(messages);
+        conversationStats.record(messages);
+    }
+
+    private void afterWrite(List<Entry> batch) {
+        flushedCounter.increment(batch.size());
+        Map<Long, String> changed = new LinkedHashMap<>();
+        for (Entry entry : batch) {
+            if (entry.segment() != null) {
+                appendLog.flushed(entry.segment());
+            }
+            changed.put(entry.message().conversationId(), entry.message().owner());
+        }
+        // Summaries read from the database only now see these rows
+        changed.forEach((conversationId, owner) -> {
+            if (owner != null) {
+                contentVersions.conversationChanged(conversationId, owner);
+            }
+        });
+        conversationStats.touched(changed.keySet());
+        engagementSketches.recordMessages(batch.stream().map(Entry::message).toList());
+    }
+
+    private static void bind(PreparedStatement ps, PendingMessage m) throws SQLException {
+        ps.setLong(1, m.id());
+        ps.setLong(2, m.conversationId());
+        if (m.senderId() != null) {
+            ps.setLong(3, m.senderId());
+        } else {
+            ps.setNull(3, Types.BIGINT);
+        }
+        ps.setString(4, m.content());
+        ps.setTimestamp(5, m.timestamp() != null ? Timestamp.valueOf(m.timestamp()) : null);
+        if (m.seq() != null) {
+            ps.setLong(6, m.seq());
+        } else {
+            ps.setNull(6, Types.BIGINT);
+        }
+        ps.setString(7, m.type() != null ? m.type().name() : null);
+        ps.setString(8, m.status() != null ? m.status().name() : null);
+        ps.setString(9, m.attachmentUrl());
+        ps.setString(10, m.attachmentType());
+    }
+}
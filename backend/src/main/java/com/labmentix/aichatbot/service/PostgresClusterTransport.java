@@ -0,0 +1,227 @@
+package com.labmentix.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.labmentix.aichatbot.dto.ClusterEnvelope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Relays broker messages through Postgres LISTEN/NOTIFY.
+ *
+ * Uses two dedicated connections (outside the Hikari pool) for listening and
+ * publishing. NOTIFY payloads are limited to 8000 bytes, so envelopes are
+ * Base64-encoded and split into frames of the form {@code id:index:total:data}.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.mode", havingValue = "postgres")
+@Slf4j
+public class PostgresClusterTransport implements ClusterTransport {
+
+    private static final int FRAME_DATA_LIMIT = 7000;
+    private static final int MAX_PARTIAL_MESSAGES = 1024;
+    // Far above any chat frame; keeps a bogus header from allocating a huge array
+    private static final int MAX_FRAMES_PER_MESSAGE = 256;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Value("${chat.cluster.channel:chat_fanout}")
+    private String channel;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Consumer<ClusterEnvelope>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, String[]> partials = new ConcurrentHashMap<>();
+    private final Object publishLock = new Object();
+
+    private Connection publishConnection;
+    private Thread listenerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!channel.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+            throw new IllegalStateException("Invalid chat.cluster.channel: " + channel);
+        }
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "pg-cluster-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        log.info("Postgres cluster transport listening on channel {}", channel);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        listenerThread.interrupt();
+        synchronized (publishLock) {
+            closeQuietly(publishConnection);
+        }
+    }
+
+    @Override
+    public void publish(ClusterEnvelope envelope) {
+        try {
+            String encoded = Base64.getEncoder().encodeToString(objectMapper.writeValueAsBytes(envelope));
+            String id = UUID.randomUUID().toString();
+            int total = (encoded.length() + FRAME_DATA_LIMIT - 1) / FRAME_DATA_LIMIT;
+
+            synchronized (publishLock) {
+                if (publishConnection == null || publishConnection.isClosed()) {
+                    publishConnection = openConnection();
+                }
+                try (PreparedStatement ps = publishConnection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                    for (int i = 0; i < total; i++) {
+                        String data = encoded.substring(i * FRAME_DATA_LIMIT,
+                                Math.min(encoded.length(), (i + 1) * FRAME_DATA_LIMIT));
+                        ps.setString(1, channel);
+                        ps.setString(2, id + ":" + i + ":" + total + ":" + data);
+                        ps.execute();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to publish cluster message: {}", e.getMessage());
+            synchronized (publishLock) {
+                closeQuietly(publishConnection);
+                publishConnection = null;
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ClusterEnvelope> listener) {
+        listeners.add(listener);
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = openConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        try {
+                            onFrame(notification.getParameter());
+                        } catch (RuntimeException e) {
+                            // Anyone can NOTIFY the channel; one bad frame must not stop the listener
+                            log.error("Dropping cluster frame: {}", e.toString());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Cluster listener connection lost, reconnecting: {}", e.getMessage());
+                    sleepQuietly(2000);
+                }
+            }
+        }
+    }
+
+    void onFrame(String frame) {
+        String[] parts = frame.split(":", 4);
+        if (parts.length != 4) {
+            log.error("Dropping malformed cluster frame");
+            return;
+        }
+        String id = parts[0];
+        int index;
+        int total;
+        try {
+            index = Integer.parseInt(parts[1]);
+            total = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            log.error("Dropping malformed cluster frame: {}", e.getMessage());
+            return;
+        }
+        if (total < 1 || total > MAX_FRAMES_PER_MESSAGE || index < 0 || index >= total) {
+            log.error("Dropping cluster frame {} of {}", index, total);
+            return;
+        }
+
+        String encoded;
+        if (total == 1) {
+            encoded = parts[3];
+        } else {
+            if (partials.size() > MAX_PARTIAL_MESSAGES) {
+                // Frames of a message are sent back to back, anything this old is lost anyway
+                partials.clear();
+            }
+            String[] chunks = partials.computeIfAbsent(id, k -> new String[total]);
+            if (chunks.length != total) {
+                log.error("Dropping cluster message {}: frames disagree on the frame count", id);
+                partials.remove(id);
+                return;
+            }
+            chunks[index] = parts[3];
+            for (String chunk : chunks) {
+                if (chunk == null) {
+                    return;
+                }
+            }
+            partials.remove(id);
+            encoded = String.join("", chunks);
+        }
+
+        try {
+            ClusterEnvelope envelope = objectMapper.readValue(
+                    new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8), ClusterEnvelope.class);
+            listeners.forEach(listener -> listener.accept(envelope));
+        } catch (Exception e) {
+            log.error("Dropping malformed cluster message: {}", e.getMessage());
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Nothing left to do with a broken connection
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.labmentix.aichatbot.service;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mergeable quantile sketch for non-negative values with {@value #RELATIVE_ACCURACY}
+ * relative error (the DDSketch scheme). Values fall into logarithmic buckets,
+ * so a sketch of response times up to hours holds about a thousand counters at
+ * most and merging is adding counts.
+ */
+public final class QuantileSketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final byte FORMAT = 1;
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount; // Values below 1 (sub-millisecond, empty replies)
+    private long count;
+
+    public void add(double value) {
+        if (value < 1) {
+            zeroCount++;
+        } else {
+            buckets.merge((int) Math.ceil(Math.log(value) / LOG_GAMMA), 1L, Long::sum);
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        other.buckets.forEach((index, n) -> buckets.merge(index, n, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /** The value at quantile {@code q} (0..1), or 0 for an empty sketch. */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return 2 * Math.pow(GAMMA, bucket.getKey()) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, buckets.lastKey()) / (GAMMA + 1);
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch();
+        copy.merge(this);
+        return copy;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + buckets.size() * 12)
+                .put(FORMAT)
+                .putLong(zeroCount)
+                .putInt(buckets.size());
+        buckets.forEach((index, n) -> buffer.putInt(index).putLong(n));
+        return buffer.array();
+    }
+
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() != FORMAT) {
+            throw new IllegalArgumentException("Unsupported quantile sketch format");
+        }
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.zeroCount = buffer.getLong();
+        sketch.count = sketch.zeroCount;
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            int index = buffer.getInt();
+            long n = buffer.getLong();
+            sketch.buckets.put(index, n);
+            sketch.count += n;
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,270 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.dto.StreamChatRequest;
+import com.labmentix.aichatbot.model.Conversation;
+import com.labmentix.aichatbot.model.Message;
+import com.labmentix.aichatbot.model.MessageStatus;
+import com.labmentix.aichatbot.model.MessageType;
+import com.labmentix.aichatbot.model.User;
+import com.labmentix.aichatbot.repository.ConversationRepository;
+import com.labmentix.aichatbot.repository.UserRepository;
+import com.labmentix.aichatbot.security.StompUserPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Chat over Server-Sent Events for HTTP clients that do not speak STOMP.
+ *
+ * Embedding, retrieval and the LLM call are reactive. Database work runs as a
+ * task on the conversation's mailbox, so the stream never holds a request
+ * thread and its messages are ordered and sequenced like the WebSocket path.
+ * Persisted messages are also broadcast to the conversation topic, so an open
+ * browser tab sees the exchange as well.
+ */
+@Service
+@Slf4j
+public class StreamingChatService {
+
+    public static final String EVENT_MESSAGE = "message";
+    public static final String EVENT_DELTA = "delta";
+    public static final String EVENT_DONE = "done";
+    public static final String EVENT_CANCELLED = "cancelled";
+    public static final String EVENT_ERROR = "error";
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    private KnowledgeBaseService knowledgeBaseService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConversationMailboxExecutor mailboxExecutor;
+
+    @Autowired
+    private ConversationSequencer conversationSequencer;
+
+    @Autowired
+    private GenerationRegistry generationRegistry;
+
+    @Autowired
+    private ChatBroadcaster chatBroadcaster;
+
+    @Autowired
+    private ContentVersions contentVersions;
+
+    @Autowired
+    private MessageWriteBehind messageWriteBehind;
+
+    @Autowired
+    private EngagementSketchService engagementSketches;
+
+    @Autowired
+    private LiveAnalyticsService liveAnalytics;
+
+    @Autowired
+    private ConversationOwnerCache conversationOwners;
+
+    /**
+     * Emits the persisted user message, the reply as {@code delta} events and finally
+     * the persisted reply. If the client disconnects the upstream LLM request is
+     * aborted and whatever was generated so far is kept as a cancelled message.
+     */
+    public Flux<ServerSentEvent<ChatMessage>> stream(StompUserPrincipal principal, StreamChatRequest request) {
+        Object mailboxKey = request.getConversationId() != null
+                ? request.getConversationId()
+                : "user:" + principal.userId();
+
+        return inMailbox(mailboxKey, () -> saveUserMessage(principal, request))
+                .flatMapMany(userMsg -> {
+                    Long conversationId = userMsg.getConversationId();
+                    GenerationHandle generation = generationRegistry.start(conversationId, principal.userId(), null);
+                    // Lets /app/chat.cancel from a browser tab stop this stream too
+                    CompletableFuture<Void> stopped = new CompletableFuture<>();
+                    generation.attach(stopped);
+
+                    Flux<ServerSentEvent<ChatMessage>> deltas = knowledgeBaseService
+                            .searchContextAsync(request.getPrompt())
+                            .onErrorResume(e -> {
+                                log.warn("Knowledge base search failed, proceeding with standard chat: {}",
+                                        e.getMessage());
+                                return Mono.just("");
+                            })
+                            .flatMapMany(context -> aiService.streamResponse(request.getPrompt(), context))
+                            .takeUntilOther(Mono.fromFuture(stopped, true).onErrorResume(e -> Mono.empty()))
+                            .doOnNext(generation::appendPartial)
+                            .map(text -> event(EVENT_DELTA, ChatMessage.builder()
+                                    .content(text)
+                                    .sender("AI Assistant")
+                                    .type(ChatMessage.MessageType.CHAT)
+                                    .conversationId(conversationId)
+                                    .build()));
+
+                    Mono<ServerSentEvent<ChatMessage>> done = Mono.defer(() -> {
+                        MessageStatus status = generation.isCancelled() ? MessageStatus.CANCELLED : MessageStatus.RECEIVED;
+                        if (status == MessageStatus.RECEIVED) {
+                            engagementSketches.recordResponse(generation.elapsedMillis(), generation.partialText().length());
+                            liveAnalytics.responseCompleted(generation.elapsedMillis());
+                        }
+                        if (status == MessageStatus.CANCELLED && generation.partialText().isBlank()) {
+                            return Mono.just(event(EVENT_CANCELLED, ChatMessage.builder()
+                                    .sender("AI Assistant")
+                                    .type(ChatMessage.MessageType.CANCELLED)
+                                    .content("Generation stopped")
+                                    .conversationId(conversationId)
+                                    .build()));
+                        }
+                        if (!generation.markPersisted()) {
+                            return Mono.empty();
+                        }
+                        return inMailbox(conversationId, () -> saveAiMessage(principal, conversationId, generation.partialText(), status))
+                                .map(aiMsg -> event(status == MessageStatus.CANCELLED ? EVENT_CANCELLED : EVENT_DONE, aiMsg));
+                    });
+
+                    return Flux.concat(Mono.just(event(EVENT_MESSAGE, userMsg)), deltas, done)
+                            .doOnCancel(() -> {
+                                // Client went away: the upstream request is already cancelled, keep the partial reply
+                                generation.cancel();
+                                String partial = generation.partialText();
+                                // The done step may already have queued the reply; a queued task is not withdrawn
+                                if (!partial.isBlank() && generation.markPersisted()) {
+                                    inMailbox(conversationId,
+                                            () -> saveAiMessage(principal, conversationId, partial, MessageStatus.CANCELLED))
+                                            .subscribe(m -> {
+                                            }, e -> log.error("Failed to keep partial reply: {}", e.getMessage()));
+                                }
+                            })
+                            .doFinally(signal -> generationRegistry.finish(generation));
+                })
+                .onErrorResume(e -> {
+                    log.error("Streaming chat failed for {}: {}", principal.username(), e.getMessage());
+                    liveAnalytics.responseFailed();
+                    String content = e instanceof RejectedExecutionException
+                            ? "Too many pending messages, please wait for the current reply."
+                            : "Sorry, I encountered an error.";
+                    return Mono.just(event(EVENT_ERROR, ChatMessage.builder()
+                            .content(content)
+                            .sender("AI Assistant")
+                            .type(ChatMessage.MessageType.ERROR)
+                            .conversationId(request.getConversationId())
+                            .build()));
+                });
+    }
+
+    private ChatMessage saveUserMessage(StompUserPrincipal principal, StreamChatRequest request) {
+        User sender = userRepository.getReferenceById(principal.userId());
+
+        Conversation conversation;
+        if (request.getConversationId() != null) {
+            if (!conversationOwners.find(request.getConversationId())
+                    .orElseThrow(() -> new RuntimeException("Conversation not found"))
+                    .ownerId().equals(principal.userId())) {
+                throw new RuntimeException("Conversation does not belong to " + principal.username());
+            }
+            conversation = conversationRepository.getReferenceById(request.getConversationId());
+        } else {
+            String prompt = request.getPrompt().trim();
+            conversation = conversationRepository.save(Conversation.builder()
+                    .user(sender)
+                    .startedAt(LocalDateTime.now())
+                    .title(prompt.length() > 30 ? prompt.substring(0, 27) + "..." : prompt)
+                    .build());
+            chatBroadcaster.toUser(principal.username(), ChatMessage.builder()
+                    .sender("SYSTEM")
+                    .type(ChatMessage.MessageType.CONVERSATION_UPDATE)
+                    .content("Conversation Created")
+                    .conversationId(conversation.getId())
+                    .build());
+        }
+
+        Message userMsg = Message.builder()
+                .content(request.getPrompt())
+                .sender(sender)
+                .conversation(conversation)
+                .timestamp(LocalDateTime.now())
+                .seq(conversationSequencer.next(conversation.getId()))
+                .type(MessageType.USER)
+                .status(MessageStatus.SENT)
+                .build();
+        messageWriteBehind.enqueue(userMsg, principal.username());
+        contentVersions.conversationChanged(conversation.getId(), principal.username());
+
+        ChatMessage echo = ChatMessage.builder()
+                .content(userMsg.getContent())
+                .sender(principal.username())
+                .type(ChatMessage.MessageType.CHAT)
+                .status(userMsg.getStatus())
+                .conversationId(conversation.getId())
+                .seq(userMsg.getSeq())
+                .build();
+        chatBroadcaster.toConversation(conversation.getId(), echo);
+        return echo;
+    }
+
+    private ChatMessage saveAiMessage(StompUserPrincipal principal, Long conversationId, String content,
+            MessageStatus status) {
+        Message aiMsg = Message.builder()
+                .content(content)
+                .sender(null) // System/AI
+                .conversation(conversationRepository.getReferenceById(conversationId))
+                .timestamp(LocalDateTime.now())
+                .seq(conversationSequencer.next(conversationId))
+                .type(MessageType.AI)
+                .status(status)
+                .build();
+        messageWriteBehind.enqueue(aiMsg, principal.username());
+        contentVersions.conversationChanged(conversationId, principal.username());
+
+        ChatMessage reply = ChatMessage.builder()
+                .content(content)
+                .sender("AI Assistant")
+                .type(ChatMessage.MessageType.CHAT)
+                .status(status)
+                .conversationId(conversationId)
+                .seq(aiMsg.getSeq())
+                .build();
+        chatBroadcaster.toConversation(conversationId, reply);
+        return reply;
+    }
+
+    /**
+     * Runs blocking work as a task on the conversation's mailbox and exposes its result.
+     */
+    private <T> Mono<T> inMailbox(Object mailboxKey, Supplier<T> work) {
+        return Mono.defer(() -> {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            mailboxExecutor.submit(mailboxKey, () -> {
+                try {
+                    result.complete(work.get());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+                return result;
+            }).exceptionally(ex -> {
+                // Only a full mailbox gets here with the result still open
+                result.completeExceptionally(ex);
+                return null;
+            });
+            return Mono.fromFuture(result);
+        });
+    }
+
+    private static ServerSentEvent<ChatMessage> event(String name, ChatMessage data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Users by username for the request path: every authenticated HTTP request,
+ * STOMP CONNECT and streamed chat resolves its user here instead of querying.
+ *
+ * Holds a detached copy rather than the entity or a {@code UserDetails}, which
+ * Spring Security may erase credentials on. Entries live for
+ * {@code chat.cache.users.ttl-seconds}; anything that changes a user must call
+ * {@link #invalidate}.
+ */
+@Service
+public class UserCache {
+
+    public record CachedUser(Long id, String username, String password, String role) {
+        @Override
+        public String toString() {
+            return "CachedUser[id=" + id + ", username=" + username + "]"; // Keeps the hash out of logs
+        }
+    }
+
+    @Value("${chat.cache.users.max-size:10000}")
+    private int maxSize;
+
+    @Value("${chat.cache.users.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BoundedCache<String, CachedUser> users;
+
+    @PostConstruct
+    void init() {
+        users = new BoundedCache<>("users", maxSize, Duration.ofSeconds(ttlSeconds));
+        users.bindTo(meterRegistry);
+    }
+
+    public Optional<CachedUser> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(users.get(username, name -> userRepository.findByUsername(name)
+                .map(u -> new CachedUser(u.getId(), u.getUsername(), u.getPassword(), u.getRole()))
+                .orElse(null)));
+    }
+
+    public void invalidate(String username) {
+        users.invalidate(username);
+    }
+}
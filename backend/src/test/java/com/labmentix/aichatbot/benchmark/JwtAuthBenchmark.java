@@ -0,0 +1,82 @@
+package com.labmentix.aichatbot.benchmark;
+
+import com.labmentix.aichatbot.security.JwtUtil;
+import com.labmentix.aichatbot.security.TokenVerifier;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of authenticating a bearer token: the old path (key and
+ * parser rebuilt, token parsed three times), a single parse with the prebuilt
+ * parser, and the verified-token cache hit that most requests take.
+ *
+ * Not part of the normal build; run with {@code mvn -P jmh test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    // Same secret as JwtUtil, for the rebuilt-per-call baseline
+    private static final String SECRET_KEY = "super_secret_key_which_must_be_long_enough_for_security";
+
+    private JwtUtil jwtUtil;
+    private TokenVerifier tokenVerifier;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        tokenVerifier = new TokenVerifier();
+        ReflectionTestUtils.setField(tokenVerifier, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(tokenVerifier, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tokenVerifier, "maxSize", 10_000);
+        ReflectionTestUtils.setField(tokenVerifier, "ttlSeconds", 900L);
+        ReflectionTestUtils.invokeMethod(tokenVerifier, "init");
+        token = jwtUtil.generateToken(new User("benchmark-user", "unused", List.of()));
+    }
+
+    @Benchmark
+    public boolean rebuiltParserThreeParses() {
+        String username = legacyClaims(token).getSubject();
+        boolean expired = legacyClaims(token).getExpiration().before(new Date());
+        return username.equals("benchmark-user") && !expired && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public JwtUtil.VerifiedToken prebuiltParserSingleParse() {
+        return jwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public JwtUtil.VerifiedToken verifiedTokenCacheHit() {
+        return tokenVerifier.verify(token);
+    }
+
+    private static Claims legacyClaims(String token) {
+        Key key = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
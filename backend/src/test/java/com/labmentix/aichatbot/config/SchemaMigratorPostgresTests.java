@@ -0,0 +1,94 @@
+package com.labmentix.aichatbot.config;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the migrations against a real Postgres, starting from a database that
+ * stopped at version 3 with messages in it, as existing installs did.
+ *
+ * Needs Docker, so it is not part of the normal build; run with
+ * {@code mvn -P postgres test -Dtest=SchemaMigratorPostgresTests}.
+ */
+class SchemaMigratorPostgresTests {
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    @BeforeAll
+    static void start() {
+        POSTGRES.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        POSTGRES.stop();
+    }
+
+    @Test
+    void partitionsExistingMessagesTable() throws Exception {
+        List<SchemaMigrator.Migration> migrations = SchemaMigrator.migrations(true);
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword())) {
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            SchemaMigrator migrator = new SchemaMigrator();
+
+            migrator.migrate(connection, true, migrations.subList(0, 3));
+            jdbc.update("INSERT INTO users (username, password) VALUES ('alice', 'x')");
+            jdbc.update("INSERT INTO conversations (user_id, title, started_at) "
+                    + "SELECT id, 'First', TIMESTAMP '2024-01-05 10:00' FROM users");
+            jdbc.update("INSERT INTO messages (conversation_id, content, type, seq, timestamp, sender_id) "
+                    + "SELECT c.id, 'hello', 'USER', 1, TIMESTAMP '2024-01-05 10:01', c.user_id FROM conversations c");
+            jdbc.update("INSERT INTO messages (conversation_id, content, type, seq, timestamp) "
+                    + "SELECT c.id, 'hi', 'AI', 2, NULL FROM conversations c");
+
+            migrator.migrate(connection, true, migrations);
+
+            assertEquals("p", jdbc.queryForObject("SELECT relkind::text FROM pg_class WHERE oid = 'messages'::regclass",
+                    String.class));
+            assertEquals(List.of("messages_default", "messages_legacy"), jdbc.queryForList(
+                    "SELECT c.relname::text FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                            + "WHERE i.inhparent = 'messages'::regclass ORDER BY 1", String.class));
+            assertEquals(List.of("id", "timestamp"), jdbc.queryForList(
+                    "SELECT a.attname::text FROM pg_index x JOIN pg_attribute a ON a.attrelid = x.indrelid "
+                            + "AND a.attnum = ANY (x.indkey) WHERE x.indrelid = 'messages'::regclass "
+                            + "AND x.indisprimary ORDER BY a.attnum", String.class));
+
+            // Legacy rows stay in place, the missing timestamp is backfilled from the conversation
+            assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM messages", Integer.class));
+            assertEquals(Timestamp.valueOf(LocalDateTime.of(2024, 1, 5, 10, 0)), jdbc.queryForObject(
+                    "SELECT timestamp FROM messages WHERE content = 'hi'", Timestamp.class));
+            assertNull(jdbc.queryForObject("SELECT range_start FROM message_partitions "
+                    + "WHERE partition_name = 'messages_legacy'", Timestamp.class));
+
+            // Ids come from message_ids now; rows past the legacy range land in the default partition
+            jdbc.update("INSERT INTO messages (id, conversation_id, content, type, seq, timestamp) "
+                    + "SELECT nextval('message_ids'), c.id, 'later', 'USER', 3, TIMESTAMP '2999-01-01 00:00' "
+                    + "FROM conversations c");
+            assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM messages_default", Integer.class));
+
+            // Deleting the conversation still cascades to every partition
+            jdbc.update("DELETE FROM conversations");
+            assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM messages", Integer.class));
+
+            // A second run finds every version recorded and changes nothing
+            migrator.migrate(connection, true, migrations);
+            assertEquals(migrations.size(), jdbc.queryForObject("SELECT COUNT(*) FROM schema_migrations",
+                    Integer.class));
+        }
+    }
+}
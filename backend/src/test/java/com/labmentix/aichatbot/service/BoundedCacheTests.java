@@ -0,0 +1,109 @@
+package com.labmentix.aichatbot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedCacheTests {
+
+    @Test
+    void entriesExpireAfterTheirTtl() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>("ttl", 10, Duration.ofMillis(50));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get("key", k -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get("key", k -> "v" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+
+        Thread.sleep(100);
+        assertFalse(cache.contains("key"));
+        assertEquals(0, cache.size());
+        assertEquals("v2", cache.get("key", k -> "v" + loads.incrementAndGet()));
+    }
+
+    @Test
+    void sizeStaysWithinTheBound() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>("bounded", 50, Duration.ofMinutes(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        for (int key = 0; key < 1_000; key++) {
+            cache.put(key, key);
+            assertTrue(cache.size() <= 50, "size " + cache.size() + " after " + key);
+        }
+        assertEquals(50, cache.size());
+        assertEquals(50, registry.get("cache.size").tag("cache", "bounded").gauge().value());
+        assertTrue(registry.get("cache.evictions").tag("cache", "bounded").functionCounter().count() >= 950);
+    }
+
+    @Test
+    void frequentlyUsedEntriesSurviveAScan() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>("scan", 1_000, Duration.ofMinutes(1));
+        for (int round = 0; round < 10; round++) {
+            for (int key = 0; key < 100; key++) {
+                cache.get(key, k -> k);
+            }
+        }
+        // Enough one-off keys to fill the cache: plain LRU would keep only these
+        for (int key = 1_000; key < 2_000; key++) {
+            cache.get(key, k -> k);
+        }
+
+        for (int key = 0; key < 100; key++) {
+            assertTrue(cache.contains(key), "hot key " + key + " was evicted");
+        }
+        assertEquals(1_000, cache.size());
+    }
+
+    @Test
+    void loadRacingAnInvalidationIsNotStored() {
+        BoundedCache<String, String> cache = new BoundedCache<>("race", 10, Duration.ofMinutes(1));
+
+        // The entry changes while its old value is being loaded
+        assertEquals("stale", cache.get("key", k -> {
+            cache.invalidate(k);
+            return "stale";
+        }));
+        assertFalse(cache.contains("key"));
+
+        assertEquals("stale", cache.get("key", k -> {
+            cache.invalidateAll();
+            return "stale";
+        }));
+        assertFalse(cache.contains("key"));
+
+        // Without a racing invalidation the next load is kept
+        assertEquals("fresh", cache.get("key", k -> "fresh"));
+        assertEquals("fresh", cache.getIfPresent("key"));
+    }
+
+    @Test
+    void absentValuesAreNotCached() {
+        BoundedCache<String, String> cache = new BoundedCache<>("absent", 10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("key", k -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get("key", k -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void rejectsCachesTooSmallToSplit() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>("tiny", 1, Duration.ofMinutes(1)));
+    }
+}
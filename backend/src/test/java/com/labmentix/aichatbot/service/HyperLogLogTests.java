@@ -0,0 +1,75 @@
+package com.labmentix.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTests {
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void estimatesStayWithinErrorBounds() {
+        // About 1.6% standard error; three of them leave no room for flakiness with a fixed hash
+        for (int distinct : new int[] { 100, 1_000, 10_000, 100_000, 1_000_000 }) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (long id = 1; id <= distinct; id++) {
+                sketch.add(id);
+                sketch.add(id); // Repeats do not count
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            assertTrue(error < 0.05, distinct + " distinct ids estimated as " + sketch.estimate());
+        }
+    }
+
+    @Test
+    void mergeEqualsSketchOfTheUnion() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        for (long id = 1; id <= 30_000; id++) {
+            monday.add(id);
+            both.add(id);
+        }
+        // Overlapping users are counted once
+        for (long id = 20_001; id <= 50_000; id++) {
+            tuesday.add(id);
+            both.add(id);
+        }
+
+        HyperLogLog merged = monday.copy();
+        merged.merge(tuesday);
+
+        assertArrayEquals(both.toBytes(), merged.toBytes());
+        assertEquals(both.estimate(), merged.estimate());
+        // The copy is independent of the sketch it was taken from
+        assertTrue(monday.estimate() < merged.estimate());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long id = 1; id <= 5_000; id++) {
+            sketch.add(id * 7919);
+        }
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertArrayEquals(bytes, restored.toBytes());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        byte[] bytes = new HyperLogLog().toBytes();
+        bytes[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(bytes));
+    }
+}
@@ -0,0 +1,146 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.AiChatbotApplication;
+import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.model.Conversation;
+import com.labmentix.aichatbot.model.User;
+import com.labmentix.aichatbot.repository.ConversationRepository;
+import com.labmentix.aichatbot.repository.UserRepository;
+import com.labmentix.aichatbot.security.JwtUtil;
+import com.labmentix.aichatbot.security.StompAuthChannelInterceptor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Two application nodes in one JVM, joined by {@link LoopbackClusterTransport}.
+ * A client connected to node B must see the frames node A publishes exactly
+ * once and in sequence order.
+ */
+class LoopbackClusterTransportTests {
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode("cluster_a");
+        nodeB = startNode("cluster_b");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @Test
+    void frameFromNodeAReachesSubscriberOnNodeBOnceInOrder() throws Exception {
+        // Each node has its own database; the subscriber's user and conversation live on B
+        User user = nodeB.getBean(UserRepository.class).save(User.builder()
+                .username("cluster-user").password("x").role("ROLE_USER").build());
+        Conversation conversation = nodeB.getBean(ConversationRepository.class).save(Conversation.builder()
+                .user(user).title("Cluster").startedAt(LocalDateTime.now()).build());
+        String token = nodeB.getBean(JwtUtil.class).generateToken(org.springframework.security.core.userdetails.User
+                .withUsername(user.getUsername()).password("x").roles("USER").build());
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new MappingJackson2MessageConverter());
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        int portB = ((WebServerApplicationContext) nodeB).getWebServer().getPort();
+        StompSession session = client.connectAsync("ws://localhost:" + portB + "/ws/websocket",
+                new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+                }).get(10, TimeUnit.SECONDS);
+
+        BlockingQueue<ChatMessage> received = new LinkedBlockingQueue<>();
+        StompHeaders subscribeHeaders = new StompHeaders();
+        subscribeHeaders.setDestination(StompAuthChannelInterceptor.conversationTopic(conversation.getId()));
+        session.subscribe(subscribeHeaders, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((ChatMessage) payload);
+            }
+        });
+        // The simple broker sends no receipts: a frame published on B itself shows the subscription is live
+        ChatBroadcaster broadcasterB = nodeB.getBean(ChatBroadcaster.class);
+        ChatMessage marker = null;
+        for (int attempt = 0; attempt < 50 && marker == null; attempt++) {
+            broadcasterB.toConversation(conversation.getId(), ChatMessage.builder()
+                    .type(ChatMessage.MessageType.TYPING).conversationId(conversation.getId()).build());
+            marker = received.poll(200, TimeUnit.MILLISECONDS);
+        }
+        assertNotNull(marker, "subscription on node B did not become active");
+        received.clear();
+
+        int frames = 200;
+        ChatBroadcaster broadcasterA = nodeA.getBean(ChatBroadcaster.class);
+        for (long seq = 1; seq <= frames; seq++) {
+            broadcasterA.toConversation(conversation.getId(), ChatMessage.builder()
+                    .sender("AI Assistant")
+                    .type(ChatMessage.MessageType.CHAT)
+                    .content("frame " + seq)
+                    .conversationId(conversation.getId())
+                    .seq(seq)
+                    .build());
+        }
+
+        for (long seq = 1; seq <= frames; seq++) {
+            ChatMessage frame = received.poll(10, TimeUnit.SECONDS);
+            while (frame != null && frame.getType() == ChatMessage.MessageType.TYPING) {
+                frame = received.poll(10, TimeUnit.SECONDS); // a late marker
+            }
+            assertNotNull(frame, "frame " + seq + " did not arrive");
+            assertEquals(seq, frame.getSeq());
+        }
+        // Nothing is delivered twice, e.g. once from the local broker and once from the relay
+        assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+
+        // Node B's replay buffer also saw every frame, so a reconnect to B can resume from it
+        List<ChatMessage> replay = nodeB.getBean(ConversationReplayBuffer.class)
+                .since(conversation.getId(), frames - 10).orElseThrow();
+        assertEquals(10, replay.size());
+
+        session.disconnect();
+        client.stop();
+    }
+
+    private static ConfigurableApplicationContext startNode(String database) {
+        // Arguments, because default properties lose to application.properties
+        return new SpringApplicationBuilder(AiChatbotApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--chat.cluster.mode=loopback");
+    }
+}
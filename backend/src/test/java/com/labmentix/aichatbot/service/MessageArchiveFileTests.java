@@ -0,0 +1,112 @@
+package com.labmentix.aichatbot.service;
+
+import com.labmentix.aichatbot.dto.MessageView;
+import com.labmentix.aichatbot.model.MessageStatus;
+import com.labmentix.aichatbot.model.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageArchiveFileTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsEachConversationBackByItsOffset() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 30, 15, 123_000_000);
+        List<MessageView> first = List.of(
+                new MessageView(10L, "hello", "alice", MessageType.USER, MessageStatus.SENT, start, 1L, null, null),
+                new MessageView(12L, "hi there", null, MessageType.AI, MessageStatus.RECEIVED,
+                        start.plusSeconds(2), 2L, null, null),
+                new MessageView(15L, "see attached", "alice", MessageType.USER, MessageStatus.SENT,
+                        start.plusMinutes(5), 3L, "/files/report.pdf", "application/pdf"));
+        // Ids and sequence numbers that go backwards, values that are null and a string over 64 KB
+        List<MessageView> second = List.of(
+                new MessageView(20L, "é".repeat(40_000), "bob", MessageType.USER, MessageStatus.ERROR,
+                        LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1_000_000), 7L, null, "image/png"),
+                new MessageView(19L, null, null, null, null, null, null, "/files/a.png", null),
+                new MessageView(25L, "", "bob", MessageType.AI, MessageStatus.PROCESSING, start, 5L, "", ""));
+
+        Path file = dir.resolve("messages_p202403.msga");
+        List<MessageArchiveFile.Block> blocks;
+        try (MessageArchiveFile.Writer writer = new MessageArchiveFile.Writer(file)) {
+            for (MessageView message : first) {
+                writer.add(1L, message);
+            }
+            for (MessageView message : second) {
+                writer.add(2L, message);
+            }
+            blocks = writer.finish();
+        }
+
+        assertFalse(Files.exists(dir.resolve("messages_p202403.msga.tmp")));
+        assertEquals(2, blocks.size());
+        assertEquals(1L, blocks.get(0).conversationId());
+        assertEquals(3, blocks.get(0).rows());
+        assertEquals(3L, blocks.get(0).maxSeq());
+        assertEquals(2L, blocks.get(1).conversationId());
+        assertEquals(7L, blocks.get(1).maxSeq());
+
+        // MessageView is a @Data class, so equality covers every column
+        MessageArchiveFile.Block block = blocks.get(1);
+        assertEquals(second, MessageArchiveFile.read(file, block.offset(), block.length()));
+        block = blocks.get(0);
+        assertEquals(first, MessageArchiveFile.read(file, block.offset(), block.length()));
+    }
+
+    @Test
+    void blockWithoutSequenceNumbersHasNoMaxSeq() throws IOException {
+        Path file = dir.resolve("legacy.msga");
+        List<MessageArchiveFile.Block> blocks;
+        try (MessageArchiveFile.Writer writer = new MessageArchiveFile.Writer(file)) {
+            writer.add(3L, new MessageView(1L, "old", "carol", MessageType.USER, MessageStatus.SENT,
+                    LocalDateTime.of(2020, 1, 1, 0, 0), null, null, null));
+            blocks = writer.finish();
+        }
+        assertNull(blocks.get(0).maxSeq());
+    }
+
+    @Test
+    void unfinishedWriterLeavesNoFile() throws IOException {
+        Path file = dir.resolve("aborted.msga");
+        try (MessageArchiveFile.Writer writer = new MessageArchiveFile.Writer(file)) {
+            writer.add(1L, new MessageView(1L, "lost", null, MessageType.AI, MessageStatus.SENT, null, 1L, null, null));
+        }
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(dir.resolve("aborted.msga.tmp")));
+    }
+
+    @Test
+    void truncatedFileIsReported() throws IOException {
+        Path file = dir.resolve("truncated.msga");
+        List<MessageView> rows = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            rows.add(new MessageView(id, "message " + id, "dave", MessageType.USER, MessageStatus.SENT,
+                    LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id), id, null, null));
+        }
+        MessageArchiveFile.Block block;
+        try (MessageArchiveFile.Writer writer = new MessageArchiveFile.Writer(file)) {
+            for (MessageView row : rows) {
+                writer.add(4L, row);
+            }
+            block = writer.finish().get(0);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThrows(IOException.class, () -> MessageArchiveFile.read(file, block.offset(), block.length()));
+    }
+}
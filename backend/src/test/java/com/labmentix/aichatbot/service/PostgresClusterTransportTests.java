@@ -0,0 +1,73 @@
+package com.labmentix.aichatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.labmentix.aichatbot.dto.ChatMessage;
+import com.labmentix.aichatbot.dto.ClusterEnvelope;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Frame reassembly only; the LISTEN/NOTIFY round trip needs a Postgres server.
+ */
+class PostgresClusterTransportTests {
+
+    private final PostgresClusterTransport transport = new PostgresClusterTransport();
+    private final List<ClusterEnvelope> delivered = new ArrayList<>();
+
+    PostgresClusterTransportTests() {
+        transport.subscribe(delivered::add);
+    }
+
+    @Test
+    void malformedFramesAreDroppedAndLaterFramesStillArrive() throws Exception {
+        for (String frame : List.of(
+                "no separators",
+                "id:one:1:data",
+                "id:0:99999999999:data",
+                "id:0:-1:data",
+                "id:0:0:data",
+                "id:2:2:data",
+                "id:-1:2:data",
+                "id:0:2147483647:data",
+                "id:0:1:not base64!",
+                "id:0:1:" + Base64.getEncoder().encodeToString("{not json".getBytes()),
+                "mixed:0:2:AAAA",
+                "mixed:1:3:AAAA")) {
+            transport.onFrame(frame);
+        }
+
+        ClusterEnvelope envelope = envelope("after the noise");
+        transport.onFrame("ok:0:1:" + encode(envelope));
+        assertEquals(List.of(envelope), delivered);
+    }
+
+    @Test
+    void framesOfOneMessageAreJoined() throws Exception {
+        ClusterEnvelope envelope = envelope("x".repeat(20_000));
+        String encoded = encode(envelope);
+        int third = encoded.length() / 3;
+        transport.onFrame("split:2:3:" + encoded.substring(2 * third));
+        transport.onFrame("split:0:3:" + encoded.substring(0, third));
+        assertEquals(List.of(), delivered);
+
+        transport.onFrame("split:1:3:" + encoded.substring(third, 2 * third));
+        assertEquals(List.of(envelope), delivered);
+    }
+
+    private static ClusterEnvelope envelope(String content) {
+        return ClusterEnvelope.builder()
+                .origin("node-a")
+                .destination("/topic/conversation.1")
+                .payload(ChatMessage.builder().type(ChatMessage.MessageType.CHAT).content(content).build())
+                .build();
+    }
+
+    private static String encode(ClusterEnvelope envelope) throws Exception {
+        return Base64.getEncoder().encodeToString(new ObjectMapper().writeValueAsBytes(envelope));
+    }
+}
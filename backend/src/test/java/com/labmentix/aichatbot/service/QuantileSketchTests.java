@@ -0,0 +1,96 @@
+package com.labmentix.aichatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTests {
+
+    private static final double[] QUANTILES = { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1 };
+
+    @Test
+    void emptySketchReturnsZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertEquals(0, sketch.count());
+        assertEquals(0, sketch.quantile(0.5));
+    }
+
+    @Test
+    void quantilesStayWithinRelativeError() {
+        // Response-time like values: mostly fast, a long tail, and a few below 1 ms
+        Random random = new Random(42);
+        double[] values = new double[50_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 100 == 0 ? random.nextDouble() : Math.exp(random.nextGaussian() * 1.5 + 7);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.count());
+        for (double q : QUANTILES) {
+            double exact = values[(int) Math.floor(q * (values.length - 1))];
+            double estimate = sketch.quantile(q);
+            if (exact < 1) {
+                assertEquals(0, estimate, "q=" + q);
+            } else {
+                assertTrue(Math.abs(estimate - exact) <= 0.01 * exact + 1e-9,
+                        "q=" + q + " exact " + exact + " estimated " + estimate);
+            }
+        }
+    }
+
+    @Test
+    void mergeEqualsSketchOfAllValues() {
+        Random random = new Random(7);
+        QuantileSketch first = new QuantileSketch();
+        QuantileSketch second = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+        for (int i = 0; i < 20_000; i++) {
+            double value = random.nextDouble() * 60_000;
+            (i % 3 == 0 ? first : second).add(value);
+            all.add(value);
+        }
+
+        QuantileSketch merged = first.copy();
+        merged.merge(second);
+
+        assertArrayEquals(all.toBytes(), merged.toBytes());
+        assertEquals(all.count(), merged.count());
+        for (double q : QUANTILES) {
+            assertEquals(all.quantile(q), merged.quantile(q), "q=" + q);
+        }
+        // The copy is independent of the sketch it was taken from
+        assertTrue(first.count() < merged.count());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 1_000; i++) {
+            sketch.add(i * 3.7);
+        }
+
+        byte[] bytes = sketch.toBytes();
+        QuantileSketch restored = QuantileSketch.fromBytes(bytes);
+
+        assertArrayEquals(bytes, restored.toBytes());
+        assertEquals(sketch.count(), restored.count());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.quantile(q), restored.quantile(q), "q=" + q);
+        }
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        byte[] bytes = new QuantileSketch().toBytes();
+        bytes[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(bytes));
+    }
+}
@@ -20,16 +20,20 @@ const ProtectedRoute = ({ children }: { children: React.ReactNode }) => {
 };
 
 
+const CONVERSATION_PAGE_SIZE = 50;
+
 const Dashboard = () => {
   const { logout, username } = useAuth();
   const [conversations, setConversations] = useState<any[]>([]);
   const [selectedConvId, setSelectedConvId] = useState<number | undefined>();
   const [renamingId, setRenamingId] = useState<number | null>(null);
   const [renamingTitle, setRenamingTitle] = useState('');
+  // Sidebar rows are summaries ordered by last activity; "Show more" widens the window
+  const [conversationLimit, setConversationLimit] = useState(CONVERSATION_PAGE_SIZE);
 
   const fetchConversations = React.useCallback(async () => {
     try {
-      const res = await api.get('/conversations');
+      const res = await api.get('/conversations', { params: { size: conversationLimit } });
       if (Array.isArray(res.data)) {
         setConversations(res.data);
         if (res.data.length > 0 && !selectedConvId) {
@@ -43,7 +47,7 @@ const Dashboard = () => {
       console.error("Error fetching conversations:", err);
       setConversations([]);
     }
-  }, [selectedConvId]);
+  }, [selectedConvId, conversationLimit]);
 
   useEffect(() => {
     fetchConversations();
@@ -184,6 +188,14 @@ const Dashboard = () => {
               )}
             </div>
           ))}
+          {conversations.length >= conversationLimit && (
+            <button
+              onClick={() => setConversationLimit(conversationLimit + CONVERSATION_PAGE_SIZE)}
+              className="w-full px-3 py-2 text-xs text-gray-500 hover:text-gray-700 dark:hover:text-gray-300 text-left"
+            >
+              Show more
+            </button>
+          )}
           {conversations.length === 0 && (
             <div className="px-3 py-2 text-xs text-gray-500 italic">No previous chats</div>
           )}
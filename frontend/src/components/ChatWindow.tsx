@@ -2,7 +2,7 @@ import React, { useState, useRef, useEffect } from 'react';
 import { useChat } from '../hooks/useChat';
 import ChatMessage from './ChatMessage';
 import { useAuth } from '../context/AuthContext';
-import { ClipboardPaste, Paperclip, X, FileText } from 'lucide-react';
+import { ClipboardPaste, Paperclip, X, FileText, Square } from 'lucide-react';
 import api from '../services/api';
 
 interface ChatWindowProps {
@@ -15,7 +15,7 @@ const ChatWindow: React.FC<ChatWindowProps> = ({ conversationId, onConversationU
     const [attachment, setAttachment] = useState<{ url: string, type: string, name: string } | null>(null);
     const [isUploading, setIsUploading] = useState(false);
     const fileInputRef = useRef<HTMLInputElement>(null);
-    const { messages, sendMessage, isConnected, isTyping } = useChat(conversationId, onConversationUpdate);
+    const { messages, sendMessage, cancelGeneration, loadOlder, hasOlder, isConnected, isTyping } = useChat(conversationId, onConversationUpdate);
     const messagesEndRef = useRef<HTMLDivElement>(null);
     const textareaRef = useRef<HTMLTextAreaElement>(null);
     const { username } = useAuth();
@@ -24,9 +24,11 @@ const ChatWindow: React.FC<ChatWindowProps> = ({ conversationId, onConversationU
         messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
     };
 
+    // Follow new messages at the bottom, but stay put when older history is prepended
+    const lastMessage = messages[messages.length - 1];
     useEffect(() => {
         scrollToBottom();
-    }, [messages, isTyping]);
+    }, [lastMessage, isTyping]);
 
     // Auto-resize textarea
     useEffect(() => {
@@ -109,6 +111,16 @@ const ChatWindow: React.FC<ChatWindowProps> = ({ conversationId, onConversationU
 
             {/* Chat History */}
             <div className="flex-1 overflow-y-auto pt-8 pb-4 space-y-6 scrollbar-thin scrollbar-thumb-gray-300 dark:scrollbar-thumb-gray-800 scrollbar-track-transparent">
+                {hasOlder && (
+                    <div className="flex justify-center">
+                        <button
+                            onClick={loadOlder}
+                            className="text-xs text-gray-500 hover:text-gray-700 dark:hover:text-gray-300 px-3 py-1 rounded-full border border-gray-300 dark:border-gray-700"
+                        >
+                            Load earlier messages
+                        </button>
+                    </div>
+                )}
                 {messages.length === 0 ? (
                     <div className="h-full flex flex-col items-center justify-center text-gray-500 space-y-4">
                         <div className="w-16 h-16 bg-gray-200 dark:bg-[#2f2f2f] rounded-2xl flex items-center justify-center text-3xl">🤖</div>
@@ -226,6 +238,16 @@ const ChatWindow: React.FC<ChatWindowProps> = ({ conversationId, onConversationU
                             >
                                 <ClipboardPaste size={18} />
                             </button>
+                            {isTyping && (
+                                <button
+                                    type="button"
+                                    onClick={cancelGeneration}
+                                    className="p-2 rounded-xl text-gray-500 hover:bg-gray-100 dark:hover:bg-gray-800 transition-all"
+                                    title="Stop generating"
+                                >
+                                    <Square size={18} />
+                                </button>
+                            )}
                             <button
                                 type="submit"
                                 disabled={(!(input || '').trim() && !attachment) || !isConnected || isUploading}
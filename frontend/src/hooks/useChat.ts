@@ -8,82 +8,180 @@ export interface ChatMessage {
     content: string;
     sender: string;
     conversationId?: number;
-    type: 'CHAT' | 'JOIN' | 'LEAVE' | 'CONVERSATION_UPDATE' | 'TYPING' | 'ERROR';
-    status?: 'SENT' | 'PROCESSING' | 'RECEIVED' | 'ERROR';
+    type: 'CHAT' | 'JOIN' | 'LEAVE' | 'CONVERSATION_UPDATE' | 'TYPING' | 'ERROR' | 'CANCEL' | 'CANCELLED' | 'RATE_LIMITED';
+    status?: 'SENT' | 'PROCESSING' | 'RECEIVED' | 'ERROR' | 'CANCELLED';
     attachmentUrl?: string;
     attachmentType?: string;
+    seq?: number;
+    retryAfterMs?: number;
 }
 
+const HISTORY_PAGE_SIZE = 50;
+
 export const useChat = (conversationId?: number, onConversationUpdate?: () => void) => {
     const [messages, setMessages] = useState<ChatMessage[]>([]);
     const [isConnected, setIsConnected] = useState(false);
     const [isTyping, setIsTyping] = useState(false);
+    // Mirrors isTyping for the cancel on leaving, whose cleanup would otherwise see a stale value
+    const generatingRef = useRef(false);
     const stompClientRef = useRef<Client | null>(null);
-    const { username } = useAuth();
+    // Highest sequence number seen for the open conversation, sent on (re)connect to get only the gap
+    const lastSeqRef = useRef(0);
+
+    const { username, token } = useAuth();
 
-    // Reset and fetch history when conversationId changes
+    // Read through a ref so a new callback (e.g. a wider sidebar window) does not reconnect the socket
+    const onConversationUpdateRef = useRef(onConversationUpdate);
     useEffect(() => {
+        onConversationUpdateRef.current = onConversationUpdate;
+    }, [onConversationUpdate]);
+
+    // Appends frames not seen yet; sequenced frames at or below lastSeq are duplicates
+    const appendMessages = useCallback((incoming: ChatMessage[]) => {
+        const fresh = incoming.filter(m => m.seq === undefined || m.seq === null || m.seq > lastSeqRef.current);
+        fresh.forEach(m => {
+            if (m.seq && m.seq > lastSeqRef.current) lastSeqRef.current = m.seq;
+        });
+        if (fresh.length) {
+            setMessages((prev) => [...prev, ...fresh]);
+        }
+    }, []);
+
+    // History comes in keyset pages; the oldest loaded id is the cursor for the next older page
+    const oldestIdRef = useRef<number | null>(null);
+    const [hasOlder, setHasOlder] = useState(false);
+
+    const toChatMessages = useCallback((page: any[]): ChatMessage[] => page.map((m: any) => ({
+        content: m.content,
+        sender: m.sender || 'AI Assistant',
+        type: 'CHAT',
+        conversationId: conversationId,
+        status: m.status || 'SENT',
+        attachmentUrl: m.attachmentUrl,
+        attachmentType: m.attachmentType,
+        seq: m.seq
+    })), [conversationId]);
+
+    // Reset and fetch the newest page of history when conversationId changes
+    useEffect(() => {
+        lastSeqRef.current = 0;
+        oldestIdRef.current = null;
+        setHasOlder(false);
         if (conversationId) {
-            api.get(`/conversations/${conversationId}/messages`)
+            api.get(`/conversations/${conversationId}/history`, { params: { limit: HISTORY_PAGE_SIZE } })
                 .then(res => {
-                    const history = res.data.map((m: any) => ({
-                        content: m.content,
-                        sender: m.sender ? m.sender.username : 'AI Assistant',
-                        type: 'CHAT',
-                        conversationId: conversationId,
-                        status: m.status || 'SENT',
-                        attachmentUrl: m.attachmentUrl,
-                        attachmentType: m.attachmentType
-                    }));
+                    const history = toChatMessages(res.data.messages);
+                    oldestIdRef.current = res.data.messages.length ? res.data.messages[0].id : null;
+                    setHasOlder(res.data.hasMore);
+                    lastSeqRef.current = history.reduce((max: number, m: ChatMessage) => Math.max(max, m.seq || 0), 0);
                     setMessages(history);
                 })
                 .catch(err => console.error("Error fetching history:", err));
         } else {
             setMessages([]);
         }
+    }, [conversationId, toChatMessages]);
+
+    const loadOlder = useCallback(() => {
+        if (!conversationId || oldestIdRef.current === null) return;
+        api.get(`/conversations/${conversationId}/history`, {
+            params: { before: oldestIdRef.current, limit: HISTORY_PAGE_SIZE }
+        })
+            .then(res => {
+                if (res.data.messages.length) {
+                    oldestIdRef.current = res.data.messages[0].id;
+                    const older = toChatMessages(res.data.messages);
+                    setMessages((prev) => [...older, ...prev]);
+                }
+                setHasOlder(res.data.hasMore);
+            })
+            .catch(err => console.error("Error fetching older messages:", err));
+    }, [conversationId, toChatMessages]);
+
+    // Leaving the conversation (or the page) abandons its pending reply. Declared before the
+    // socket effect so this cleanup runs while the old connection is still open.
+    useEffect(() => {
+        return () => {
+            const client = stompClientRef.current;
+            if (generatingRef.current && conversationId && client?.connected) {
+                client.publish({
+                    destination: '/app/chat.cancel',
+                    body: JSON.stringify({ conversationId, type: 'CANCEL' })
+                });
+            }
+            generatingRef.current = false;
+            setIsTyping(false);
+        };
     }, [conversationId]);
 
     useEffect(() => {
-        if (!username) return;
+        if (!username || !token) return;
 
         const wsBaseUrl = import.meta.env.VITE_WS_URL || 'https://mega-project-7-ai-chatbot-with-java-spring-boot-production.up.railway.app';
         const socket = new SockJS(`${wsBaseUrl}/ws`);
         const client = new Client({
             webSocketFactory: () => socket,
+            connectHeaders: { Authorization: `Bearer ${token}` },
             onConnect: () => {
                 setIsConnected(true);
                 console.log('Connected to WebSocket');
 
-                client.subscribe('/topic/public', (message) => {
+                // Per-user notices (sidebar refreshes, errors not tied to a conversation)
+                client.subscribe('/user/queue/updates', (message) => {
                     const receivedMessage: ChatMessage = JSON.parse(message.body);
 
                     if (receivedMessage.type === 'CONVERSATION_UPDATE') {
-                        onConversationUpdate?.();
+                        onConversationUpdateRef.current?.();
                         return;
                     }
 
-                    if (receivedMessage.type === 'TYPING') {
-                        if (receivedMessage.conversationId === conversationId) {
+                    if ((receivedMessage.type === 'ERROR' || receivedMessage.type === 'RATE_LIMITED') && receivedMessage.content) {
+                        setIsTyping(false);
+                        setMessages((prev) => [...prev, receivedMessage]);
+                    }
+                });
+
+                // Only the open conversation's traffic reaches this client
+                if (conversationId) {
+                    client.subscribe(`/topic/conversation.${conversationId}`, (message) => {
+                        const receivedMessage: ChatMessage = JSON.parse(message.body);
+
+                        if (receivedMessage.type === 'TYPING') {
+                            generatingRef.current = true;
                             setIsTyping(true);
+                            return;
                         }
-                        return;
-                    }
 
-                    if (receivedMessage.type === 'CHAT' || receivedMessage.type === 'ERROR') {
-                        // 🛡️ Safety & Cleanliness
-                        // 1. Filter by conversationId
-                        if (receivedMessage.conversationId && receivedMessage.conversationId !== conversationId) {
+                        if (receivedMessage.type === 'CANCELLED') {
+                            generatingRef.current = false;
+                            setIsTyping(false);
                             return;
                         }
 
-                        // Stop typing indicator when a message arrives
-                        setIsTyping(false);
+                        if (receivedMessage.type === 'CHAT' || receivedMessage.type === 'ERROR') {
+                            // Stop typing indicator when the AI answers
+                            if (receivedMessage.sender !== username) {
+                                generatingRef.current = false;
+                                setIsTyping(false);
+                            }
 
-                        if (receivedMessage.content || receivedMessage.attachmentUrl) {
-                            setMessages((prev) => [...prev, receivedMessage]);
+                            if (receivedMessage.content || receivedMessage.attachmentUrl) {
+                                appendMessages([receivedMessage]);
+                            }
                         }
-                    }
-                });
+                    });
+
+                    // Frames missed while disconnected, answered only to this session
+                    client.subscribe('/user/queue/resume', (message) => {
+                        const missed: ChatMessage[] = JSON.parse(message.body);
+                        appendMessages(missed.filter(m => m.conversationId === conversationId));
+                    });
+
+                    client.publish({
+                        destination: '/app/chat.resume',
+                        body: JSON.stringify({ conversationId, lastSeq: lastSeqRef.current })
+                    });
+                }
 
                 client.publish({
                     destination: '/app/chat.addUser',
@@ -100,9 +198,10 @@ export const useChat = (conversationId?: number, onConversationUpdate?: () => vo
         stompClientRef.current = client;
 
         return () => {
+            // A reconnect (e.g. a refreshed token) keeps the pending reply; resume fills the gap
             client.deactivate();
         };
-    }, [username, conversationId, onConversationUpdate]);
+    }, [username, token, conversationId, appendMessages]);
 
     const sendMessage = useCallback((content: string, attachment?: { url: string, type: string }) => {
         if (stompClientRef.current && stompClientRef.current.connected && isConnected && username) {
@@ -134,5 +233,14 @@ export const useChat = (conversationId?: number, onConversationUpdate?: () => vo
         }
     }, [isConnected, username, conversationId]);
 
-    return { messages, sendMessage, isConnected, isTyping };
+    const cancelGeneration = useCallback(() => {
+        if (stompClientRef.current && stompClientRef.current.connected && conversationId) {
+            stompClientRef.current.publish({
+                destination: '/app/chat.cancel',
+                body: JSON.stringify({ conversationId, type: 'CANCEL' })
+            });
+        }
+    }, [conversationId]);
+
+    return { messages, sendMessage, cancelGeneration, loadOlder, hasOlder, isConnected, isTyping };
 };
@@ -1,14 +1,24 @@
 import React, { useEffect, useState } from 'react';
 import { useNavigate } from 'react-router-dom';
+import { Client } from '@stomp/stompjs';
+import SockJS from 'sockjs-client';
 import {
     XAxis, YAxis, CartesianGrid, Tooltip, ResponsiveContainer,
     AreaChart, Area
 } from 'recharts';
 import {
     Users, MessageSquare, Hash, TrendingUp, ArrowLeft,
-    Calendar, Award, Activity
+    Calendar, Award, Activity, Clock
 } from 'lucide-react';
 import api from '../services/api';
+import { useAuth } from '../context/AuthContext';
+
+interface Percentiles {
+    count: number;
+    p50: number;
+    p95: number;
+    p99: number;
+}
 
 interface AnalyticsData {
     totalUsers: number;
@@ -16,12 +26,45 @@ interface AnalyticsData {
     totalConversations: number;
     messagesPerDay: Record<string, number>;
     topConversations: { title: string; messageCount: number }[];
+    dailyActiveUsers: number;
+    weeklyActiveUsers: number;
+    engagement: {
+        conversationsPerDay: Record<string, number>;
+        responseTimeMs: Percentiles;
+        responseLength: Percentiles;
+    } | null;
 }
 
+interface LivePoint {
+    second: number;
+    userMessages: number;
+    aiMessages: number;
+    responses: number;
+    failedResponses: number;
+    avgResponseMs: number;
+}
+
+interface LiveFrame {
+    userMessages: number;
+    aiMessages: number;
+    responses: number;
+    failedResponses: number;
+    points: LivePoint[];
+}
+
+const LIVE_WINDOW_SECONDS = 60;
+
+const localDate = (epochSecond: number) => {
+    const d = new Date(epochSecond * 1000);
+    return `${d.getFullYear()}-${String(d.getMonth() + 1).padStart(2, '0')}-${String(d.getDate()).padStart(2, '0')}`;
+};
+
 const AnalyticsDashboard: React.FC = () => {
     const [stats, setStats] = useState<AnalyticsData | null>(null);
+    const [livePoints, setLivePoints] = useState<LivePoint[] | null>(null);
     const [loading, setLoading] = useState(true);
     const navigate = useNavigate();
+    const { token } = useAuth();
 
     useEffect(() => {
         const fetchStats = async () => {
@@ -37,6 +80,57 @@ const AnalyticsDashboard: React.FC = () => {
         fetchStats();
     }, []);
 
+    // Admins get per-second updates pushed over STOMP instead of refetching the stats
+    useEffect(() => {
+        if (!token) return;
+        let client: Client | null = null;
+        let cancelled = false;
+
+        const applyFrame = (frame: LiveFrame) => {
+            setLivePoints(prev => [...(prev ?? []), ...frame.points].slice(-LIVE_WINDOW_SECONDS));
+            setStats(prev => {
+                if (!prev) return prev;
+                const messagesPerDay = { ...prev.messagesPerDay };
+                let added = 0;
+                frame.points.forEach(p => {
+                    const n = p.userMessages + p.aiMessages;
+                    const day = localDate(p.second);
+                    if (n > 0 && day in messagesPerDay) {
+                        messagesPerDay[day] += n;
+                    }
+                    added += n;
+                });
+                return { ...prev, totalMessages: prev.totalMessages + added, messagesPerDay };
+            });
+        };
+
+        const startLive = async () => {
+            try {
+                const res = await api.get('/analytics/live');
+                if (cancelled) return;
+                setLivePoints((res.data as LiveFrame).points);
+            } catch {
+                return; // Not an admin: the page stays a snapshot
+            }
+            const wsBaseUrl = import.meta.env.VITE_WS_URL || 'https://mega-project-7-ai-chatbot-with-java-spring-boot-production.up.railway.app';
+            client = new Client({
+                webSocketFactory: () => new SockJS(`${wsBaseUrl}/ws`),
+                connectHeaders: { Authorization: `Bearer ${token}` },
+                reconnectDelay: 5000,
+                onConnect: () => {
+                    client?.subscribe('/topic/analytics', message => applyFrame(JSON.parse(message.body)));
+                },
+            });
+            client.activate();
+        };
+        startLive();
+
+        return () => {
+            cancelled = true;
+            client?.deactivate();
+        };
+    }, [token]);
+
     if (loading) {
         return (
             <div className="flex items-center justify-center h-screen bg-gray-50 dark:bg-black">
@@ -47,10 +141,18 @@ const AnalyticsDashboard: React.FC = () => {
 
     if (!stats) return null;
 
+    const lastMinute = livePoints?.reduce((sum, p) => sum + p.userMessages + p.aiMessages, 0) ?? 0;
+    const liveResponses = livePoints?.filter(p => p.responses > 0) ?? [];
+    const liveAvgResponseMs = liveResponses.length
+        ? liveResponses.reduce((sum, p) => sum + p.avgResponseMs * p.responses, 0)
+            / liveResponses.reduce((sum, p) => sum + p.responses, 0)
+        : 0;
+
     // Transform messagesPerDay for Recharts
     const chartData = Object.entries(stats.messagesPerDay).map(([date, count]) => ({
         date: date.split('-').slice(1).join('/'), // simplify date MM/DD
-        messages: count
+        messages: count,
+        conversations: stats.engagement?.conversationsPerDay[date] ?? 0
     })).sort((a, b) => a.date.localeCompare(b.date));
 
     return (
@@ -112,6 +214,49 @@ const AnalyticsDashboard: React.FC = () => {
                     </div>
                 </div>
 
+                {/* Live (admins only, pushed every second) */}
+                {livePoints && (
+                    <div className="grid grid-cols-1 md:grid-cols-2 gap-6 mb-8">
+                        <div className="bg-white dark:bg-[#171717] p-6 rounded-2xl border border-gray-200 dark:border-gray-800 shadow-sm">
+                            <h3 className="text-gray-500 dark:text-gray-400 text-sm font-medium">Messages (Last Minute)</h3>
+                            <p className="text-3xl font-bold mt-1">{lastMinute}</p>
+                        </div>
+                        <div className="bg-white dark:bg-[#171717] p-6 rounded-2xl border border-gray-200 dark:border-gray-800 shadow-sm">
+                            <h3 className="text-gray-500 dark:text-gray-400 text-sm font-medium">Avg Response Time (Last Minute)</h3>
+                            <p className="text-3xl font-bold mt-1">
+                                {liveResponses.length ? `${(liveAvgResponseMs / 1000).toFixed(1)}s` : '-'}
+                            </p>
+                        </div>
+                    </div>
+                )}
+
+                {/* Engagement (approximate, from daily sketches) */}
+                <div className="grid grid-cols-1 md:grid-cols-3 gap-6 mb-8">
+                    <div className="bg-white dark:bg-[#171717] p-6 rounded-2xl border border-gray-200 dark:border-gray-800 shadow-sm">
+                        <h3 className="text-gray-500 dark:text-gray-400 text-sm font-medium">Active Users (Today / 7 Days)</h3>
+                        <p className="text-3xl font-bold mt-1">{stats.dailyActiveUsers} / {stats.weeklyActiveUsers}</p>
+                    </div>
+                    <div className="bg-white dark:bg-[#171717] p-6 rounded-2xl border border-gray-200 dark:border-gray-800 shadow-sm">
+                        <div className="flex items-center gap-2">
+                            <Clock size={14} className="text-gray-400" />
+                            <h3 className="text-gray-500 dark:text-gray-400 text-sm font-medium">Response Time p50 / p95 / p99</h3>
+                        </div>
+                        <p className="text-2xl font-bold mt-1">
+                            {stats.engagement
+                                ? `${(stats.engagement.responseTimeMs.p50 / 1000).toFixed(1)}s / ${(stats.engagement.responseTimeMs.p95 / 1000).toFixed(1)}s / ${(stats.engagement.responseTimeMs.p99 / 1000).toFixed(1)}s`
+                                : '-'}
+                        </p>
+                    </div>
+                    <div className="bg-white dark:bg-[#171717] p-6 rounded-2xl border border-gray-200 dark:border-gray-800 shadow-sm">
+                        <h3 className="text-gray-500 dark:text-gray-400 text-sm font-medium">Reply Length p50 / p95 / p99 (chars)</h3>
+                        <p className="text-2xl font-bold mt-1">
+                            {stats.engagement
+                                ? `${stats.engagement.responseLength.p50} / ${stats.engagement.responseLength.p95} / ${stats.engagement.responseLength.p99}`
+                                : '-'}
+                        </p>
+                    </div>
+                </div>
+
                 <div className="grid grid-cols-1 lg:grid-cols-2 gap-8">
                     {/* Growth Chart */}
                     <div className="bg-white dark:bg-[#171717] p-6 rounded-2xl border border-gray-200 dark:border-gray-800 shadow-sm">
@@ -136,6 +281,7 @@ const AnalyticsDashboard: React.FC = () => {
                                         itemStyle={{ color: '#fff' }}
                                     />
                                     <Area type="monotone" dataKey="messages" stroke="#3b82f6" strokeWidth={3} fillOpacity={1} fill="url(#colorMsg)" />
+                                    <Area type="monotone" dataKey="conversations" stroke="#f59e0b" strokeWidth={2} fillOpacity={0} />
                                 </AreaChart>
                             </ResponsiveContainer>
                         </div>